@@ -1,7 +1,15 @@
 package com.appyo.physioapp.auth;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import com.appyo.physioapp.user.User;
+import com.appyo.physioapp.user.UserContext;
+import com.appyo.physioapp.user.UserContextService;
+import com.appyo.physioapp.user.UserWriteBehindBuffer;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -13,122 +21,230 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/auth")
 @CrossOrigin(origins = "*")
 public class AuthController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
+
     private final UserRepository userRepo;
     private final JwtUtil jwtUtil;
-    private final PasswordEncoder encoder;
+    private final PasswordHashingService passwordHashing;
+    private final UserWriteBehindBuffer writeBehind;
+    private final TakenIdentifierFilter takenIdentifiers;
+    private final CredentialCache credentialCache;
+    private final AuthRateLimiter rateLimiter;
+    private final UserIdResolver userIdResolver;
+    private final UserContextService userContextService;
+    private final RefreshTokenStore refreshTokens;
+    private final AuthWriteExecutor writeExecutor;
 
-    public AuthController(UserRepository userRepo, JwtUtil jwtUtil, PasswordEncoder encoder) {
+    public AuthController(UserRepository userRepo, JwtUtil jwtUtil, PasswordHashingService passwordHashing,
+                          UserWriteBehindBuffer writeBehind, TakenIdentifierFilter takenIdentifiers,
+                          CredentialCache credentialCache, AuthRateLimiter rateLimiter,
+                          UserIdResolver userIdResolver, UserContextService userContextService,
+                          RefreshTokenStore refreshTokens, AuthWriteExecutor writeExecutor) {
         this.userRepo = userRepo;
         this.jwtUtil = jwtUtil;
-        this.encoder = encoder;
+        this.passwordHashing = passwordHashing;
+        this.writeBehind = writeBehind;
+        this.takenIdentifiers = takenIdentifiers;
+        this.credentialCache = credentialCache;
+        this.rateLimiter = rateLimiter;
+        this.userIdResolver = userIdResolver;
+        this.userContextService = userContextService;
+        this.refreshTokens = refreshTokens;
+        this.writeExecutor = writeExecutor;
     }
 
     @PostMapping("/signup")
-    public Map<String, Object> signup(@RequestBody AuthRequest request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> signup(@RequestBody AuthRequest request) {
         Map<String, Object> response = new HashMap<>();
         
+        long retryAfter = rateLimiter.tryAcquire("signup", AuthRateLimiter.SCOPE_ACCOUNT, request.getUsername());
+        if (retryAfter > 0) {
+            return CompletableFuture.completedFuture(tooManyRequests(response, retryAfter));
+        }
+        
         try {
-            if (userRepo.findByUsername(request.getUsername()) != null) {
-                response.put("success", false);
-                response.put("message", "Username already exists");
-                return response;
-            }
-
             // Validate email is provided
             if (request.getEmail() == null || request.getEmail().trim().isEmpty()) {
                 response.put("success", false);
                 response.put("message", "Email is required");
-                return response;
+                return CompletableFuture.completedFuture(ResponseEntity.ok(response));
             }
 
             // Normalize email before checking for duplicates
             String normalizedEmail = request.getEmail().trim().toLowerCase();
-            if (userRepo.findByEmail(normalizedEmail) != null) {
-                response.put("success", false);
-                response.put("message", "Email already in use");
-                return response;
-            }
 
-            // Create user object with UUID
-            User user = new User(request.getUsername(), request.getEmail(), encoder.encode(request.getPassword()));
-            user.setRole("MEMBER");
-            
-            userRepo.save(user);
-            
-            response.put("success", true);
-            response.put("message", "User created successfully");
-            response.put("userId", user.getUserId().toString());
-            return response;
-        } catch (org.springframework.dao.DataIntegrityViolationException e) {
-            // Handles any constraint violations that slipped through our manual checks
-            response.put("success", false);
-            response.put("message", "User already exists (constraint violation)");
-            return response;
+            // The filter rules out most new names in memory; only possible collisions need one combined query.
+            // Anything the filter misses is still caught by the unique constraints on save.
+            if (takenIdentifiers.mightContainUsername(request.getUsername())
+                    || takenIdentifiers.mightContainEmail(normalizedEmail)) {
+                for (UserIdentifiers existing : userRepo.findByUsernameOrEmail(request.getUsername(), normalizedEmail)) {
+                    if (request.getUsername().equals(existing.getUsername())) {
+                        response.put("success", false);
+                        response.put("message", "Username already exists");
+                        return CompletableFuture.completedFuture(ResponseEntity.ok(response));
+                    }
+                    if (normalizedEmail.equals(existing.getEmail())) {
+                        response.put("success", false);
+                        response.put("message", "Email already in use");
+                        return CompletableFuture.completedFuture(ResponseEntity.ok(response));
+                    }
+                }
+            }
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "Signup failed: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.ok(response));
+        }
+
+        // Hash on the dedicated pool, then save on the write pool so hashing threads never wait on JDBC;
+        // the request thread is released while both run
+        return passwordHashing.encode(request.getPassword())
+            .thenApplyAsync(passwordHash -> {
+                // Create user object with UUID
+                User user = new User(request.getUsername(), request.getEmail(), passwordHash);
+                user.setRole("MEMBER");
+                
+                userRepo.save(user);
+                takenIdentifiers.add(user.getUsername(), user.getEmail());
+                
+                response.put("success", true);
+                response.put("message", "User created successfully");
+                response.put("userId", user.getUserId().toString());
+                return ResponseEntity.ok(response);
+            }, writeExecutor)
+            .exceptionally(e -> {
+                if (PasswordHashingService.isRejection(e)) {
+                    return serverBusy(response);
+                }
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                response.put("success", false);
+                if (cause instanceof org.springframework.dao.DataIntegrityViolationException) {
+                    // Handles any constraint violations that slipped through our manual checks
+                    response.put("message", "User already exists (constraint violation)");
+                } else {
+                    response.put("message", "Signup failed: " + cause.getMessage());
+                }
+                return ResponseEntity.ok(response);
+            });
+    }
+
+    /**
+     * Lightweight availability check for the registration form, safe to call on each keystroke.
+     * Names the in-memory filter has never seen are answered without touching the database.
+     */
+    @GetMapping("/username-available")
+    public Map<String, Object> isUsernameAvailable(@RequestParam String username) {
+        Map<String, Object> response = new HashMap<>();
+        String trimmed = username.trim();
+        
+        if (trimmed.isEmpty()) {
+            response.put("available", false);
             return response;
         }
+        
+        boolean available = !takenIdentifiers.mightContainUsername(trimmed) || !userRepo.existsByUsername(trimmed);
+        response.put("username", trimmed);
+        response.put("available", available);
+        return response;
     }
 
     @PostMapping("/login")
-    public Map<String, Object> login(@RequestBody AuthRequest request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> login(@RequestBody AuthRequest request) {
         Map<String, Object> response = new HashMap<>();
         
+        // Per-account limit: slows password guessing against one user even when spread across addresses
+        long retryAfter = rateLimiter.tryAcquire("login", AuthRateLimiter.SCOPE_ACCOUNT, request.getUsername());
+        if (retryAfter > 0) {
+            return CompletableFuture.completedFuture(tooManyRequests(response, retryAfter));
+        }
+        
+        UserCredentials user;
         try {
-            User user = userRepo.findByUsername(request.getUsername());
+            // Only the credential columns are read, and repeat logins are served from the cache
+            user = credentialCache.get(request.getUsername());
             if (user == null) {
                 response.put("success", false);
                 response.put("message", "User not found");
-                return response;
-            }
-            
-            if (!encoder.matches(request.getPassword(), user.getPasswordHash())) {
-                response.put("success", false);
-                response.put("message", "Invalid password");
-                return response;
+                return CompletableFuture.completedFuture(ResponseEntity.ok(response));
             }
-
-            // Update last login
-            user.setLastLogin(LocalDateTime.now());
-            userRepo.save(user);
-
-            String token = jwtUtil.generateToken(user.getUsername());
-            
-            response.put("success", true);
-            response.put("message", "Login successful");
-            response.put("token", token);
-            response.put("user", Map.of(
-                "userId", user.getUserId().toString(),
-                "username", user.getUsername(),
-                "email", user.getEmail() != null ? user.getEmail() : "",
-                "name", user.getName() != null ? user.getName() : "",
-                "role", user.getRole()
-            ));
-            
-            return response;
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "Login error: " + e.getMessage());
-            return response;
+            return CompletableFuture.completedFuture(ResponseEntity.ok(response));
         }
+
+        // Verify on the dedicated pool; the request thread is released while BCrypt runs
+        return passwordHashing.matches(request.getPassword(), user.getPasswordHash())
+            .thenApply(matched -> {
+                if (!matched) {
+                    response.put("success", false);
+                    response.put("message", "Invalid password");
+                    return ResponseEntity.ok(response);
+                }
+
+                // Last login is written behind in a batch, not inside the login request
+                writeBehind.recordLogin(user.getUserId(), LocalDateTime.now());
+
+                if (passwordHashing.needsRehash(user.getPasswordHash())) {
+                    rehashPassword(user.getUserId(), user.getUsername(), request.getPassword());
+                }
+
+                String token = jwtUtil.generateToken(user);
+                RefreshTokenStore.IssuedRefreshToken refreshToken = refreshTokens.issue(
+                    user.getUserId(), user.getUsername(), user.getRole(), user.getName(), user.getEmail());
+                
+                response.put("success", true);
+                response.put("message", "Login successful");
+                response.put("token", token);
+                response.put("expiresIn", jwtUtil.getExpirationSeconds());
+                response.put("refreshToken", refreshToken.getToken());
+                response.put("user", Map.of(
+                    "userId", user.getUserId().toString(),
+                    "username", user.getUsername(),
+                    "email", user.getEmail() != null ? user.getEmail() : "",
+                    "name", user.getName() != null ? user.getName() : "",
+                    "role", user.getRole()
+                ));
+                
+                return ResponseEntity.ok(response);
+            })
+            .exceptionally(e -> {
+                if (PasswordHashingService.isRejection(e)) {
+                    return serverBusy(response);
+                }
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                response.put("success", false);
+                response.put("message", "Login error: " + cause.getMessage());
+                return ResponseEntity.ok(response);
+            });
     }
 
     @PostMapping("/validate")
-    public Map<String, Object> validateToken(@RequestHeader("Authorization") String authHeader) {
+    public Map<String, Object> validateToken(@AuthenticationPrincipal AuthenticatedUser principal) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.replace("Bearer ", "");
-            if (jwtUtil.validateToken(token)) {
-                String username = jwtUtil.extractUsername(token);
-                User user = userRepo.findByUsername(username);
+            if (principal != null && principal.hasProfileClaims()) {
+                // Access tokens are self-contained: the verified claims are the answer, no lookup needed
+                response.put("success", true);
+                response.put("user", Map.of(
+                    "userId", principal.getUserId().toString(),
+                    "username", principal.getUsername(),
+                    "email", principal.getEmail(),
+                    "name", principal.getName() != null ? principal.getName() : "",
+                    "role", principal.getRole() != null ? principal.getRole() : ""
+                ));
+            } else if (principal != null) {
+                // Older tokens without profile claims are served from the shared per-user context cache
+                UserContext user = userContextService.get(userIdResolver.resolveUserId(principal));
                 
                 if (user != null) {
                     response.put("success", true);
@@ -154,6 +270,79 @@ public class AuthController {
         
         return response;
     }
-    
 
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token.
+     * The presented refresh token is used up; both lookups are in memory.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, Object>> refresh(@RequestBody Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+        
+        String presented = request.get("refreshToken");
+        RefreshTokenStore.IssuedRefreshToken rotated = presented != null ? refreshTokens.rotate(presented) : null;
+        
+        if (rotated == null) {
+            response.put("success", false);
+            response.put("message", "Invalid refresh token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+        
+        RefreshTokenStore.RefreshSession session = rotated.getSession();
+        response.put("success", true);
+        response.put("token", jwtUtil.generateToken(session.getUserId(), session.getUsername(),
+            session.getRole(), session.getName(), session.getEmail()));
+        response.put("expiresIn", jwtUtil.getExpirationSeconds());
+        response.put("refreshToken", rotated.getToken());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Revokes a refresh token. The current access token stays valid until it expires.
+     */
+    @PostMapping("/logout")
+    public Map<String, Object> logout(@RequestBody Map<String, String> request) {
+        Map<String, Object> response = new HashMap<>();
+        
+        String presented = request.get("refreshToken");
+        if (presented != null) {
+            refreshTokens.revoke(presented);
+        }
+        response.put("success", true);
+        response.put("message", "Logged out");
+        return response;
+    }
+
+    /**
+     * Re-hashes a password that was stored with a lower cost factor than currently configured.
+     * Runs after a successful login, when the raw password is known to be correct. If the hashing
+     * pool is saturated the upgrade is simply retried on a later login.
+     */
+    private void rehashPassword(UUID userId, String username, String rawPassword) {
+        passwordHashing.encode(rawPassword)
+            .thenAcceptAsync(newHash -> {
+                userRepo.updatePasswordHash(userId, newHash);
+                credentialCache.invalidate(username);
+            }, writeExecutor)
+            .exceptionally(e -> {
+                logger.debug("Skipped password rehash for user {}: {}", userId, e.getMessage());
+                return null;
+            });
+    }
+
+    private ResponseEntity<Map<String, Object>> tooManyRequests(Map<String, Object> response, long retryAfterSeconds) {
+        response.put("success", false);
+        response.put("message", "Too many requests, please try again later");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+            .body(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> serverBusy(Map<String, Object> response) {
+        response.put("success", false);
+        response.put("message", "Server is busy, please try again shortly");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(response);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.appyo.physioapp.auth;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Applies the per-IP token buckets of {@link AuthRateLimiter} to the /auth routes before the request
+ * body is read, so a flood from one address is shed without any parsing, hashing or queries.
+ * Per-account limits need the username from the body and are applied in AuthController.
+ *
+ * The client address is request.getRemoteAddr(); behind a reverse proxy set
+ * server.forward-headers-strategy so it reflects X-Forwarded-For.
+ *
+ * Like JwtAuthenticationFilter this is not a @Component; SecurityConfig adds it to the filter chain.
+ */
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+
+    // Request path -> route name used in the rate-limit configuration
+    private static final Map<String, String> ROUTES = Map.of(
+            "/auth/login", "login",
+            "/auth/signup", "signup",
+            "/auth/refresh", "refresh"
+    );
+
+    private final AuthRateLimiter rateLimiter;
+
+    public AuthRateLimitFilter(AuthRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !ROUTES.containsKey(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String route = ROUTES.get(request.getServletPath());
+        long retryAfter = rateLimiter.tryAcquire(route, AuthRateLimiter.SCOPE_IP, request.getRemoteAddr());
+
+        if (retryAfter > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"success\":false,\"message\":\"Too many requests, please try again later\"}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
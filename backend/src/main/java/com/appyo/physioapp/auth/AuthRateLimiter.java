@@ -0,0 +1,222 @@
+package com.appyo.physioapp.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AuthRateLimiter
+ *
+ * In-process token buckets for the expensive /auth routes. Each route can limit by client IP
+ * ("ip" scope) and by the account named in the request ("account" scope); a request is admitted
+ * only if the bucket for its key still has a token.
+ *
+ * Buckets are configured per route and scope:
+ *   auth.rate-limit.{route}.{scope}.capacity           burst size
+ *   auth.rate-limit.{route}.{scope}.refill-per-minute  sustained rate
+ * A capacity of 0 disables that limit.
+ *
+ * Each bucket is a single AtomicLong updated with compare-and-set, so admission never blocks.
+ * Memory is bounded by auth.rate-limit.max-buckets: buckets that have refilled completely are
+ * dropped every minute (a full bucket behaves exactly like a new one). When the map fills up
+ * between sweeps, a tenth of it is freed by dropping the buckets closest to full, i.e. the least
+ * recently used ones. Forgetting those gives their keys at most a few extra tokens, while the
+ * drained buckets of a client hammering the endpoint are the last to go; new keys always get a
+ * bucket of their own, so a flood of addresses cannot throttle everyone else.
+ *
+ * Metrics:
+ * - auth.rate_limit.requests (counter, tags route, scope, outcome=allowed|rejected)
+ * - auth.rate_limit.buckets (gauge): live buckets
+ * - auth.rate_limit.evictions (counter): buckets dropped early because the map was full
+ */
+@Component
+public class AuthRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthRateLimiter.class);
+
+    public static final String SCOPE_IP = "ip";
+    public static final String SCOPE_ACCOUNT = "account";
+
+    // Defaults per route and scope: {capacity, refill per minute}
+    private static final Map<String, int[]> DEFAULTS = Map.of(
+            "login." + SCOPE_IP, new int[]{20, 10},
+            "login." + SCOPE_ACCOUNT, new int[]{5, 5},
+            "signup." + SCOPE_IP, new int[]{5, 5},
+            "signup." + SCOPE_ACCOUNT, new int[]{0, 0},
+            "refresh." + SCOPE_IP, new int[]{30, 30}
+    );
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxBuckets;
+    private final Map<String, BucketSpec> specs = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Counter evictions;
+
+    public AuthRateLimiter(Environment environment, MeterRegistry meterRegistry,
+                           @Value("${auth.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${auth.rate-limit.max-buckets:100000}") int maxBuckets) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxBuckets = maxBuckets;
+        Gauge.builder("auth.rate_limit.buckets", buckets, Map::size).register(meterRegistry);
+        this.evictions = Counter.builder("auth.rate_limit.evictions").register(meterRegistry);
+    }
+
+    /**
+     * Takes one token from the bucket for this route, scope and key.
+     *
+     * @return 0 if the request is admitted, otherwise the number of seconds until a token is available
+     */
+    public long tryAcquire(String route, String scope, String key) {
+        BucketSpec spec = specs.computeIfAbsent(route + "." + scope, this::loadSpec);
+        if (!enabled || spec.capacity <= 0 || key == null) {
+            return 0;
+        }
+
+        long waitNanos = bucketFor(route, scope, key, spec).tryAcquire(System.nanoTime());
+        if (waitNanos == 0) {
+            spec.allowed.increment();
+            return 0;
+        }
+        spec.rejected.increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    @Scheduled(fixedRate = 60000) // Drop buckets that have refilled completely every minute
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+        if (before > 0) {
+            logger.debug("Evicted {} idle rate-limit buckets", before - buckets.size());
+        }
+    }
+
+    private TokenBucket bucketFor(String route, String scope, String key, BucketSpec spec) {
+        String bucketKey = route + "|" + scope + "|" + key;
+        TokenBucket bucket = buckets.get(bucketKey);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets) {
+            makeRoom(System.nanoTime());
+        }
+        return buckets.computeIfAbsent(bucketKey, k -> new TokenBucket(spec));
+    }
+
+    // Frees a tenth of the map, full buckets first and then those that will be full soonest
+    private void makeRoom(long now) {
+        // One thread sweeps; the others add their bucket meanwhile, overshooting by at most one each
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int target = maxBuckets - Math.max(1, maxBuckets / 10);
+            int before = buckets.size();
+            if (before < maxBuckets) {
+                return;
+            }
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+            int excess = buckets.size() - target;
+            if (excess > 0) {
+                long[] fullAt = buckets.values().stream().mapToLong(bucket -> bucket.fullAt.get()).sorted().toArray();
+                long cutoff = fullAt[Math.min(excess, fullAt.length) - 1];
+                buckets.values().removeIf(bucket -> bucket.fullAt.get() - cutoff <= 0);
+            }
+            int evicted = before - buckets.size();
+            evictions.increment(evicted);
+            logger.warn("Rate-limit buckets reached {}, evicted the {} least recently used", maxBuckets, evicted);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private BucketSpec loadSpec(String routeAndScope) {
+        int[] defaults = DEFAULTS.getOrDefault(routeAndScope, new int[]{0, 0});
+        String prefix = "auth.rate-limit." + routeAndScope;
+        int capacity = environment.getProperty(prefix + ".capacity", Integer.class, defaults[0]);
+        int refillPerMinute = environment.getProperty(prefix + ".refill-per-minute", Integer.class, defaults[1]);
+
+        String[] parts = routeAndScope.split("\\.", 2);
+        BucketSpec spec = new BucketSpec(capacity, Math.max(1, refillPerMinute),
+                counter(parts[0], parts[1], "allowed"), counter(parts[0], parts[1], "rejected"));
+        if (capacity > 0) {
+            logger.info("Rate limit for {}: burst {}, {} per minute", routeAndScope, capacity, refillPerMinute);
+        }
+        return spec;
+    }
+
+    private Counter counter(String route, String scope, String outcome) {
+        return Counter.builder("auth.rate_limit.requests")
+                .tag("route", route)
+                .tag("scope", scope)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static final class BucketSpec {
+        private final int capacity;
+        private final long nanosPerToken;
+        private final Counter allowed;
+        private final Counter rejected;
+
+        private BucketSpec(int capacity, int refillPerMinute, Counter allowed, Counter rejected) {
+            this.capacity = capacity;
+            this.nanosPerToken = TimeUnit.MINUTES.toNanos(1) / refillPerMinute;
+            this.allowed = allowed;
+            this.rejected = rejected;
+        }
+    }
+
+    /**
+     * Token bucket stored as the time at which it will be full again (the GCRA form). Taking a token
+     * pushes that time forward by one refill interval; the bucket is empty when the time lies more
+     * than capacity intervals in the future.
+     */
+    private static final class TokenBucket {
+        private final long nanosPerToken;
+        private final long burstNanos;
+        private final AtomicLong fullAt;
+
+        private TokenBucket(BucketSpec spec) {
+            this.nanosPerToken = spec.nanosPerToken;
+            this.burstNanos = spec.nanosPerToken * spec.capacity;
+            this.fullAt = new AtomicLong(System.nanoTime());
+        }
+
+        // Returns 0 when a token was taken, otherwise the nanoseconds until one is available
+        private long tryAcquire(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current - now, 0) + now + nanosPerToken;
+                long overshoot = next - now - burstNanos;
+                if (overshoot > 0) {
+                    return overshoot;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        private boolean isFull(long now) {
+            return fullAt.get() - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.appyo.physioapp.auth;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AuthWriteExecutor
+ *
+ * Runs the database writes that follow a password hash (saving a new user, storing an upgraded
+ * hash) off the {@link PasswordHashingService} pool. Those writes wait for a connection from the
+ * small Hikari pool; doing them on hashing threads would stall BCrypt work behind JDBC. Sized like
+ * the connection pool, and like the hashing pool it rejects with a
+ * {@link RejectedExecutionException} when its queue is full, which callers turn into a 503.
+ *
+ * Metrics:
+ * - auth.write.queue (gauge): writes waiting for a thread
+ */
+@Component
+public class AuthWriteExecutor implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthWriteExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+
+    public AuthWriteExecutor(MeterRegistry meterRegistry,
+                             @Value("${auth.write.threads:5}") int threads,
+                             @Value("${auth.write.queue-capacity:256}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "auth-write-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("auth.write.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+
+        logger.info("Auth write pool started with {} threads and queue capacity {}", threads, queueCapacity);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,63 @@
+package com.appyo.physioapp.auth;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Immutable principal published by {@link JwtAuthenticationFilter} once a bearer token has been verified.
+ * Handlers receive it with {@code @AuthenticationPrincipal} instead of re-parsing the Authorization header.
+ */
+public final class AuthenticatedUser {
+
+    private final String username;
+    private final UUID userId; // null for tokens issued before the userId claim existed
+    private final String role;
+    private final String name;  // null for tokens issued before profile claims existed
+    private final String email; // null for tokens issued before profile claims existed
+    private final Instant expiresAt;
+
+    public AuthenticatedUser(String username, UUID userId, String role, String name, String email, Instant expiresAt) {
+        this.username = username;
+        this.userId = userId;
+        this.role = role;
+        this.name = name;
+        this.email = email;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return true if the token carries every claim /auth/validate reports, so no lookup is needed
+     */
+    public boolean hasProfileClaims() {
+        return userId != null && email != null;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
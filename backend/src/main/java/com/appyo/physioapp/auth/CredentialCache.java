@@ -0,0 +1,56 @@
+package com.appyo.physioapp.auth;
+
+import com.appyo.physioapp.cache.BoundedExpiringCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Short-lived cache of {@link UserCredentials} by username for /auth/login.
+ *
+ * Entries are invalidated whenever the password hash or the cached profile columns (email, name)
+ * change, and otherwise expire after auth.credential-cache.ttl-seconds as a safety net for
+ * changes made outside this application. Unknown usernames are not cached.
+ */
+@Component
+public class CredentialCache {
+
+    private final BoundedExpiringCache<String, UserCredentials> cache;
+    private final UserRepository userRepository;
+
+    public CredentialCache(UserRepository userRepository, MeterRegistry meterRegistry,
+                           @Value("${auth.credential-cache.max-size:5000}") int maxSize,
+                           @Value("${auth.credential-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.cache = new BoundedExpiringCache<>(maxSize, ttlSeconds * 1000);
+        this.cache.registerMetrics(meterRegistry, "credentials");
+    }
+
+    /**
+     * Returns the credentials for a username, loading them with the projection query on a miss.
+     *
+     * @return the credentials, or null if no such user exists
+     */
+    public UserCredentials get(String username) {
+        UserCredentials credentials = cache.get(username);
+        if (credentials == null) {
+            credentials = userRepository.findCredentialsByUsername(username);
+            if (credentials != null) {
+                cache.put(username, credentials);
+            }
+        }
+        return credentials;
+    }
+
+    public void invalidate(String username) {
+        if (username != null) {
+            cache.invalidate(username);
+        }
+    }
+
+    @Scheduled(fixedRate = 60000) // Drop expired entries every minute
+    public void purgeExpired() {
+        cache.purgeExpired();
+    }
+}
@@ -0,0 +1,53 @@
+package com.appyo.physioapp.auth;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Verifies the bearer token once per request and publishes an {@link AuthenticatedUser}
+ * to the SecurityContext. Requests without a valid token pass through unauthenticated;
+ * the handlers decide whether that is an error.
+ *
+ * This filter is deliberately not a @Component so Spring Boot does not also register it
+ * as a plain servlet filter; SecurityConfig adds it to the security filter chain.
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtUtil jwtUtil;
+
+    public JwtAuthenticationFilter(JwtUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader("Authorization");
+
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            AuthenticatedUser principal = jwtUtil.parseToken(header.substring(BEARER_PREFIX.length()).trim());
+            if (principal != null) {
+                List<SimpleGrantedAuthority> authorities = principal.getRole() != null
+                        ? List.of(new SimpleGrantedAuthority("ROLE_" + principal.getRole()))
+                        : Collections.emptyList();
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(principal, null, authorities);
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
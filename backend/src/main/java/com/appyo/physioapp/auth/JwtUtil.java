@@ -5,48 +5,113 @@ import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import java.util.Date;
+import java.util.UUID;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 
 @Component
 public class JwtUtil {
 
-    /* @Value("${jwt.secret}") finds the value in application properties and assigns to private attribute secret */
-    @Value("${jwt.secret}")
-    private String secret;
-    private final long EXPIRATION = 1000 * 60 * 60; // 1 hour
+    /* Access token lifetime; clients can renew tokens with a refresh token (see RefreshTokenStore) */
+    private final long expirationMillis;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    /* The signing key and parser are immutable and thread-safe, so they are built once instead of per token */
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final VerifiedTokenCache tokenCache;
+
+    /* @Value("${jwt.secret}") finds the value in application properties and passes it in as secret */
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.access-token.expiration-seconds:3600}") long expirationSeconds,
+                   VerifiedTokenCache tokenCache) {
+        this.expirationMillis = expirationSeconds * 1000;
+        this.tokenCache = tokenCache;
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     public String generateToken(String username) {
         return Jwts.builder()
                 .setSubject(username)
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION))
-                .signWith(getSigningKey())
+                .setExpiration(new Date(System.currentTimeMillis() + expirationMillis))
+                .signWith(signingKey)
+                .compact();
+    }
+
+    /**
+     * Issues a token that also carries the user's UUID and role, so authenticated handlers
+     * can identify the user without looking them up by username.
+     */
+    public String generateToken(UserCredentials user) {
+        return generateToken(user.getUserId(), user.getUsername(), user.getRole(), user.getName(), user.getEmail());
+    }
+
+    /**
+     * Issues a self-contained access token: besides the user's UUID and role it carries the name and
+     * email reported by /auth/validate, so validating it needs no database access.
+     */
+    public String generateToken(UUID userId, String username, String role, String name, String email) {
+        return Jwts.builder()
+                .setSubject(username)
+                .claim("userId", userId.toString())
+                .claim("role", role)
+                .claim("name", name)
+                .claim("email", email)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + expirationMillis))
+                .signWith(signingKey)
                 .compact();
     }
 
+    /**
+     * Verifies the token signature and expiry once and returns the authenticated principal.
+     * Tokens seen before are answered from the verified-token cache without re-verification.
+     *
+     * @param token the raw JWT (without the "Bearer " prefix)
+     * @return the principal carried by the token, or null if the token is invalid or expired
+     */
+    public AuthenticatedUser parseToken(String token) {
+        Claims cached = tokenCache.get(token);
+        if (cached != null) {
+            return toPrincipal(cached);
+        }
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            tokenCache.put(token, claims);
+            return toPrincipal(claims);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     public String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
+        return parser.parseClaimsJws(token)
                 .getBody()
                 .getSubject();
     }
 
+    /**
+     * @return access token lifetime in seconds, reported to clients as expiresIn
+     */
+    public long getExpirationSeconds() {
+        return expirationMillis / 1000;
+    }
+
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return parseToken(token) != null;
+    }
+
+    private AuthenticatedUser toPrincipal(Claims claims) {
+        String userId = claims.get("userId", String.class);
+        return new AuthenticatedUser(
+                claims.getSubject(),
+                userId != null ? UUID.fromString(userId) : null,
+                claims.get("role", String.class),
+                claims.get("name", String.class),
+                claims.get("email", String.class),
+                claims.getExpiration().toInstant());
     }
 }
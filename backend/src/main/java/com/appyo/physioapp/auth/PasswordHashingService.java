@@ -0,0 +1,123 @@
+package com.appyo.physioapp.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * PasswordHashingService
+ *
+ * Runs BCrypt hashing and verification on a dedicated, size-limited pool so a burst of logins
+ * cannot occupy every Tomcat worker thread. When the pool and its queue are full the task is
+ * rejected immediately with a {@link RejectedExecutionException}; callers turn that into a 503
+ * instead of letting requests pile up behind ~100 ms hashes.
+ *
+ * Metrics:
+ * - auth.password.hash (timer, tag operation=matches|encode): time spent hashing
+ * - auth.password.hash.queue (gauge): tasks waiting for a hashing thread
+ * - auth.password.hash.rejected (counter): tasks shed because the pool was saturated
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer matchesTimer;
+    private final Timer encodeTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingService(PasswordEncoder encoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${auth.hashing.threads:0}") int threads,
+                                  @Value("${auth.hashing.queue-capacity:64}") int queueCapacity) {
+        this.encoder = encoder;
+
+        // BCrypt is CPU bound, so by default use one thread per core
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.matchesTimer = Timer.builder("auth.password.hash").tag("operation", "matches").register(meterRegistry);
+        this.encodeTimer = Timer.builder("auth.password.hash").tag("operation", "encode").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.password.hash.rejected").register(meterRegistry);
+        Gauge.builder("auth.password.hash.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+
+        logger.info("Password hashing pool started with {} threads and queue capacity {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Checks a raw password against a stored hash on the hashing pool.
+     * The future fails with RejectedExecutionException when the pool is saturated.
+     */
+    public CompletableFuture<Boolean> matches(String rawPassword, String passwordHash) {
+        return submit(matchesTimer, () -> rawPassword != null && passwordHash != null
+                && encoder.matches(rawPassword, passwordHash));
+    }
+
+    /**
+     * Hashes a raw password on the hashing pool with the configured cost factor.
+     * The future fails with RejectedExecutionException when the pool is saturated.
+     */
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(encodeTimer, () -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * @return true if the stored hash was produced with a lower cost factor than currently configured
+     */
+    public boolean needsRehash(String passwordHash) {
+        return passwordHash != null && encoder.upgradeEncoding(passwordHash);
+    }
+
+    /**
+     * @return true if the exception (or its cause) means the hashing pool shed the task
+     */
+    public static boolean isRejection(Throwable throwable) {
+        Throwable current = throwable;
+        while (current != null) {
+            if (current instanceof RejectedExecutionException) {
+                return true;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> timer.record(task), executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
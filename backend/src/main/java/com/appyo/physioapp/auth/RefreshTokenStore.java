@@ -0,0 +1,394 @@
+package com.appyo.physioapp.auth;
+
+import com.appyo.physioapp.cache.BoundedExpiringCache;
+import com.appyo.physioapp.jdbc.BatchWrites;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RefreshTokenStore
+ *
+ * Holds live refresh tokens in memory so /auth/refresh is a map lookup plus a JWT signature.
+ * Each token is single-use: refreshing removes it and issues a successor in the same family.
+ * Presenting a token that was already rotated means it was copied, so the whole family is revoked.
+ *
+ * Only SHA-256 digests of tokens are kept. Changes are written to the refresh_token table in
+ * batches every jwt.refresh-token.persist-interval-ms and at shutdown, and live tokens are loaded
+ * back at startup, so a restart loses at most the last interval of rotations (those users log in again).
+ * A change the database rejects (e.g. for a deleted user) is dropped on its own instead of blocking
+ * the rest, see {@link BatchWrites}; only an unreachable database keeps changes for the next round.
+ * Reuse detection covers tokens rotated since the last start.
+ *
+ * Metrics:
+ * - auth.refresh_tokens.active (gauge): live refresh tokens
+ * - auth.refresh_tokens.reuse_detected (counter): families revoked because a rotated token was replayed
+ */
+@Component
+public class RefreshTokenStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenStore.class);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final String UPSERT_SQL = """
+        INSERT INTO refresh_token (token_hash, family_id, user_id, username, role, name, email, created_at, expires_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON CONFLICT (token_hash) DO UPDATE
+        SET role = EXCLUDED.role, name = EXCLUDED.name, email = EXCLUDED.email
+        """;
+
+    private static final String DELETE_SQL = "DELETE FROM refresh_token WHERE token_hash = ?";
+
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM refresh_token WHERE expires_at <= ?";
+
+    private static final String LOAD_SQL = """
+        SELECT token_hash, family_id, user_id, username, role, name, email, created_at, expires_at
+        FROM refresh_token
+        WHERE expires_at > ?
+        """;
+
+    private final Map<String, RefreshSession> sessions = new ConcurrentHashMap<>();
+    // Hashes of each user's live tokens, so a profile change touches only that user's sessions
+    private final Map<UUID, Set<String>> userSessions = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final BoundedExpiringCache<String, UUID> rotated;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlSeconds;
+    private final Counter reuseCounter;
+
+    public RefreshTokenStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${jwt.refresh-token.expiration-days:14}") long expirationDays,
+                             @Value("${jwt.refresh-token.rotated-max-size:100000}") int rotatedMaxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.ttlSeconds = expirationDays * 24 * 60 * 60;
+        this.rotated = new BoundedExpiringCache<>(rotatedMaxSize, 0);
+        this.reuseCounter = Counter.builder("auth.refresh_tokens.reuse_detected").register(meterRegistry);
+        Gauge.builder("auth.refresh_tokens.active", sessions, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Starts a new token family at login.
+     */
+    public IssuedRefreshToken issue(UUID userId, String username, String role, String name, String email) {
+        return store(new RefreshSession(UUID.randomUUID(), userId, username, role, name, email,
+                Instant.now(), Instant.now().plusSeconds(ttlSeconds)));
+    }
+
+    /**
+     * Exchanges a refresh token for its successor.
+     *
+     * @return the new token and the user it belongs to, or null if the token is unknown, expired or replayed
+     */
+    public IssuedRefreshToken rotate(String rawToken) {
+        String hash = digest(rawToken);
+        RefreshSession current = sessions.remove(hash);
+        if (current != null) {
+            unindex(hash, current);
+        }
+
+        if (current == null) {
+            UUID family = rotated.get(hash);
+            if (family != null) {
+                reuseCounter.increment();
+                int revoked = revokeFamily(family);
+                logger.warn("Rotated refresh token replayed; revoked {} tokens of its family", revoked);
+            }
+            return null;
+        }
+
+        dirty.add(hash);
+        if (current.isExpired(Instant.now())) {
+            return null;
+        }
+        rotated.put(hash, current.familyId, current.expiresAt.toEpochMilli());
+        return store(current.successor(Instant.now().plusSeconds(ttlSeconds)));
+    }
+
+    /**
+     * Revokes a single refresh token, used by logout.
+     *
+     * @return true if the token was live
+     */
+    public boolean revoke(String rawToken) {
+        String hash = digest(rawToken);
+        RefreshSession session = sessions.remove(hash);
+        if (session != null) {
+            unindex(hash, session);
+            dirty.add(hash);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Updates the name and email that refreshed access tokens will carry after a profile change.
+     */
+    public void updateUserDetails(UUID userId, String name, String email) {
+        Set<String> hashes = userId != null ? userSessions.get(userId) : null;
+        if (hashes == null) {
+            return;
+        }
+        for (String hash : hashes) {
+            if (sessions.computeIfPresent(hash, (key, session) -> session.withUserDetails(name, email)) != null) {
+                dirty.add(hash);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            Timestamp now = Timestamp.from(Instant.now());
+            jdbcTemplate.update(DELETE_EXPIRED_SQL, now);
+            jdbcTemplate.query(LOAD_SQL, rs -> {
+                String hash = rs.getString("token_hash");
+                RefreshSession session = new RefreshSession(
+                        rs.getObject("family_id", UUID.class),
+                        rs.getObject("user_id", UUID.class),
+                        rs.getString("username"),
+                        rs.getString("role"),
+                        rs.getString("name"),
+                        rs.getString("email"),
+                        rs.getTimestamp("created_at").toInstant(),
+                        rs.getTimestamp("expires_at").toInstant());
+                if (sessions.putIfAbsent(hash, session) == null) {
+                    index(hash, session);
+                }
+            }, now);
+            logger.info("Loaded {} live refresh tokens", sessions.size());
+        } catch (Exception e) {
+            // Tokens issued before the restart fail to refresh and those users log in again
+            logger.warn("Could not load refresh tokens: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-token.persist-interval-ms:5000}")
+    public void persist() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        List<String> batch = new ArrayList<>();
+        for (String hash : new ArrayList<>(dirty)) {
+            if (dirty.remove(hash)) {
+                batch.add(hash);
+            }
+        }
+
+        List<String> unwritten = BatchWrites.write(batch, this::write, (hash, e) ->
+                // Typically a token whose user was deleted; it keeps working until the next restart
+                logger.warn("Dropping refresh token change the database rejected: {}", e.getMessage()));
+        if (!unwritten.isEmpty()) {
+            logger.error("Database unavailable, will retry {} refresh token changes", unwritten.size());
+            dirty.addAll(unwritten);
+        }
+    }
+
+    // Upserts live tokens and deletes revoked ones, in one transaction
+    private void write(List<String> hashes) {
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (String hash : hashes) {
+            RefreshSession session = sessions.get(hash);
+            if (session != null) {
+                upserts.add(new Object[]{hash, session.familyId, session.userId, session.username, session.role,
+                        session.name, session.email, Timestamp.from(session.createdAt), Timestamp.from(session.expiresAt)});
+            } else {
+                deletes.add(new Object[]{hash});
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!upserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+            }
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+            }
+        });
+        logger.debug("Persisted {} refresh tokens and removed {}", upserts.size(), deletes.size());
+    }
+
+    @Scheduled(fixedRate = 60000) // Drop expired tokens every minute
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        sessions.forEach((hash, session) -> {
+            if (session.isExpired(now) && sessions.remove(hash, session)) {
+                unindex(hash, session);
+                dirty.add(hash);
+            }
+        });
+        rotated.purgeExpired();
+    }
+
+    @PreDestroy
+    public void persistOnShutdown() {
+        persist();
+    }
+
+    private int revokeFamily(UUID familyId) {
+        int revoked = 0;
+        for (Map.Entry<String, RefreshSession> entry : sessions.entrySet()) {
+            if (entry.getValue().familyId.equals(familyId) && sessions.remove(entry.getKey(), entry.getValue())) {
+                unindex(entry.getKey(), entry.getValue());
+                dirty.add(entry.getKey());
+                revoked++;
+            }
+        }
+        return revoked;
+    }
+
+    private IssuedRefreshToken store(RefreshSession session) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        String hash = digest(token);
+        sessions.put(hash, session);
+        index(hash, session);
+        dirty.add(hash);
+        return new IssuedRefreshToken(token, session);
+    }
+
+    private void index(String hash, RefreshSession session) {
+        if (session.userId == null) {
+            return;
+        }
+        userSessions.compute(session.userId, (userId, hashes) -> {
+            Set<String> updated = hashes != null ? hashes : ConcurrentHashMap.newKeySet();
+            updated.add(hash);
+            return updated;
+        });
+    }
+
+    // Drops the user's entry with their last token so the index does not keep users who logged out
+    private void unindex(String hash, RefreshSession session) {
+        if (session.userId == null) {
+            return;
+        }
+        userSessions.computeIfPresent(session.userId, (userId, hashes) -> {
+            hashes.remove(hash);
+            return hashes.isEmpty() ? null : hashes;
+        });
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A raw refresh token to hand to the client, with the user it was issued for.
+     */
+    public static final class IssuedRefreshToken {
+        private final String token;
+        private final RefreshSession session;
+
+        private IssuedRefreshToken(String token, RefreshSession session) {
+            this.token = token;
+            this.session = session;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public RefreshSession getSession() {
+            return session;
+        }
+    }
+
+    /**
+     * What the store knows about a live refresh token: its family and the claims of the access tokens it mints.
+     */
+    public static final class RefreshSession {
+        private final UUID familyId;
+        private final UUID userId;
+        private final String username;
+        private final String role;
+        private final String name;
+        private final String email;
+        private final Instant createdAt;
+        private final Instant expiresAt;
+
+        private RefreshSession(UUID familyId, UUID userId, String username, String role, String name,
+                               String email, Instant createdAt, Instant expiresAt) {
+            this.familyId = familyId;
+            this.userId = userId;
+            this.username = username;
+            this.role = role;
+            this.name = name;
+            this.email = email;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+        }
+
+        private RefreshSession successor(Instant newExpiresAt) {
+            return new RefreshSession(familyId, userId, username, role, name, email, Instant.now(), newExpiresAt);
+        }
+
+        private RefreshSession withUserDetails(String newName, String newEmail) {
+            return new RefreshSession(familyId, userId, username, role, newName, newEmail, createdAt, expiresAt);
+        }
+
+        private boolean isExpired(Instant now) {
+            return !expiresAt.isAfter(now);
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.appyo.physioapp.auth;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TakenIdentifierFilter
+ *
+ * An in-memory Bloom filter of usernames and emails that are already registered. A negative
+ * answer is definitive, so signup and the username-availability check can skip the database for
+ * names that were never taken. A positive answer may be a false positive (about 1% at the
+ * configured capacity) and must be confirmed with a query.
+ *
+ * The filter only ever grows; it is warmed from the User table when the application starts and
+ * updated on each signup. Until warming finishes every lookup answers "maybe" so nothing is missed.
+ * The unique constraints on username and email remain the final authority.
+ */
+@Component
+public class TakenIdentifierFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TakenIdentifierFilter.class);
+
+    private final UserRepository userRepository;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private volatile boolean warmed = false;
+
+    public TakenIdentifierFilter(UserRepository userRepository,
+                                 @Value("${auth.identifier-filter.expected-entries:200000}") int expectedEntries,
+                                 @Value("${auth.identifier-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+
+        // Standard Bloom filter sizing: m = -n ln p / (ln 2)^2, k = m / n ln 2
+        long m = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, m);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedEntries * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        try {
+            List<UserIdentifiers> identifiers = userRepository.findAllIdentifiers();
+            for (UserIdentifiers identifier : identifiers) {
+                add(identifier.getUsername(), identifier.getEmail());
+            }
+            warmed = true;
+            logger.info("Taken-identifier filter warmed with {} users ({} bits, {} hashes)",
+                    identifiers.size(), bitCount, hashCount);
+        } catch (Exception e) {
+            // Stay unwarmed: every lookup falls through to the database
+            logger.warn("Could not warm taken-identifier filter: {}", e.getMessage());
+        }
+    }
+
+    public void add(String username, String email) {
+        if (username != null) {
+            put("u:" + username);
+        }
+        if (email != null) {
+            put("e:" + email.trim().toLowerCase());
+        }
+    }
+
+    /**
+     * @return false only if the username is definitely not registered
+     */
+    public boolean mightContainUsername(String username) {
+        return !warmed || mightContain("u:" + username);
+    }
+
+    /**
+     * @return false only if the email is definitely not registered
+     */
+    public boolean mightContainEmail(String email) {
+        return !warmed || mightContain("e:" + email.trim().toLowerCase());
+    }
+
+    private void put(String key) {
+        long hash1 = fnv1a(key);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << (bit & 63);
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    private boolean mightContain(String key) {
+        long hash1 = fnv1a(key);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long fnv1a(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // 64-bit finalizer (from MurmurHash3) to derive an independent second hash
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash | 1; // odd, so the probe sequence cycles through all bits
+    }
+}
@@ -0,0 +1,51 @@
+package com.appyo.physioapp.auth;
+
+import java.util.UUID;
+
+/**
+ * Read-only projection of the columns the login path needs.
+ * Loaded with a JPQL constructor expression so the wide TEXT profile columns of User
+ * are never transferred and no managed entity enters the persistence context.
+ */
+public final class UserCredentials {
+
+    private final UUID userId;
+    private final String username;
+    private final String passwordHash;
+    private final String email;
+    private final String name;
+    private final String role;
+
+    public UserCredentials(UUID userId, String username, String passwordHash, String email, String name, String role) {
+        this.userId = userId;
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.email = email;
+        this.name = name;
+        this.role = role;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRole() {
+        return role;
+    }
+}
@@ -0,0 +1,33 @@
+package com.appyo.physioapp.auth;
+
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Resolves the user ID for an authenticated request.
+ *
+ * Tokens issued at login carry the userId claim, so the common case needs no database access.
+ * Tokens issued before the claim was added (they live at most one hour) fall back to a
+ * single-column lookup by username.
+ */
+@Component
+public class UserIdResolver {
+
+    private final UserRepository userRepository;
+
+    public UserIdResolver(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * @param principal the authenticated user published by JwtAuthenticationFilter
+     * @return the user's UUID, or null if a legacy token names a user that no longer exists
+     */
+    public UUID resolveUserId(AuthenticatedUser principal) {
+        if (principal.getUserId() != null) {
+            return principal.getUserId();
+        }
+        return userRepository.findUserIdByUsername(principal.getUsername());
+    }
+}
@@ -0,0 +1,12 @@
+package com.appyo.physioapp.auth;
+
+/**
+ * Spring Data projection with just the unique identifiers of a user,
+ * so uniqueness checks do not hydrate the whole User entity.
+ */
+public interface UserIdentifiers {
+
+    String getUsername();
+
+    String getEmail();
+}
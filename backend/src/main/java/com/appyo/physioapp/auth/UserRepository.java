@@ -1,7 +1,12 @@
 package com.appyo.physioapp.auth;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import com.appyo.physioapp.user.User;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -21,6 +26,31 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     // finds the user by their user ID
     User findByUserId(UUID userId);
 
+    // returns the username/email of any user that collides with either value, in one query
+    List<UserIdentifiers> findByUsernameOrEmail(String username, String email);
+
+    // checks whether a username is taken without loading the user
+    boolean existsByUsername(String username);
+
+    // all registered usernames and emails, used to warm the signup filter at startup
+    @Query("SELECT u.username AS username, u.email AS email FROM User u")
+    List<UserIdentifiers> findAllIdentifiers();
+
+    // resolves only the user ID for a username, without hydrating the whole entity
+    @Query("SELECT u.userId FROM User u WHERE u.username = :username")
+    UUID findUserIdByUsername(@Param("username") String username);
+
+    // loads only the columns login and token validation need, as an unmanaged read-only object
+    @Query("SELECT new com.appyo.physioapp.auth.UserCredentials(u.userId, u.username, u.passwordHash, u.email, u.name, u.role) "
+            + "FROM User u WHERE u.username = :username")
+    UserCredentials findCredentialsByUsername(@Param("username") String username);
+
+    // replaces only the password hash, used when upgrading the BCrypt cost factor on login
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.passwordHash = :passwordHash WHERE u.userId = :userId")
+    int updatePasswordHash(@Param("userId") UUID userId, @Param("passwordHash") String passwordHash);
+
     // saves the user to the database, usually used after creating a new user object from the AuthController during signup
     User save(User user); 
 }
\ No newline at end of file
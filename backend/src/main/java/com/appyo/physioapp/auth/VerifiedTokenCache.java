@@ -0,0 +1,67 @@
+package com.appyo.physioapp.auth;
+
+import com.appyo.physioapp.cache.BoundedExpiringCache;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Remembers tokens whose signature has already been verified so repeat requests from the same
+ * session skip Base64 decoding, claim parsing and the HMAC check.
+ *
+ * Entries are keyed by a SHA-256 digest of the token (the raw token is never stored) and expire
+ * together with the token itself. The cache is bounded and evicts least recently used sessions first.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final BoundedExpiringCache<String, Claims> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size:10000}") int maxSize, MeterRegistry meterRegistry) {
+        this.cache = new BoundedExpiringCache<>(maxSize, 0);
+        this.cache.registerMetrics(meterRegistry, "verified-tokens");
+    }
+
+    /**
+     * Returns the claims of a previously verified, unexpired token, or null on a miss.
+     */
+    public Claims get(String token) {
+        return cache.get(digest(token));
+    }
+
+    public void put(String token, Claims claims) {
+        if (claims.getExpiration() == null) {
+            return; // never cache tokens that do not expire
+        }
+        cache.put(digest(token), claims, claims.getExpiration().getTime());
+    }
+
+    public long getHitCount() {
+        return cache.hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.missCount();
+    }
+
+    @Scheduled(fixedRate = 60000) // Drop expired sessions every minute
+    public void purgeExpired() {
+        cache.purgeExpired();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,27 +1,34 @@
 package com.appyo.physioapp.backend;
 
+import com.appyo.physioapp.auth.AuthenticatedUser;
 import com.appyo.physioapp.backend.model.ChatCompletionRequest;
 import com.appyo.physioapp.backend.model.ChatCompletionResponse;
-import com.appyo.physioapp.backend.model.Message;
-import com.appyo.physioapp.backend.model.Role;
-import com.appyo.physioapp.backend.service.DeepseekApiService;
+import com.appyo.physioapp.chat.ChatConversationService;
+import com.appyo.physioapp.llm.ChatStreamListener;
+import com.appyo.physioapp.llm.LlmClient;
+import com.appyo.physioapp.llm.LlmConcurrencyLimiter;
+import com.appyo.physioapp.llm.LlmMetrics;
+import com.appyo.physioapp.llm.LlmRouter;
+import com.appyo.physioapp.llm.PromptBudget;
+import com.appyo.physioapp.llm.SingleFlightRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import okhttp3.ResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import retrofit2.Retrofit;
-import retrofit2.converter.jackson.JacksonConverterFactory;
-import okhttp3.OkHttpClient;
-import okhttp3.Interceptor;
-import okhttp3.Request;
-import okhttp3.Response;
-
-import javax.annotation.PostConstruct;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import retrofit2.Call;
+
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * ChatController
@@ -54,13 +61,26 @@ public class ChatController {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
 
-    @Value("${deepseek.api.key:}")
-    private String apiKey;
+    private static final String APOLOGY =
+        "I'm sorry, I'm having trouble processing your request right now. Please try again later.";
+
+    // Request and response header carrying the conversation a message belongs to
+    static final String CONVERSATION_HEADER = "X-Conversation-Id";
 
-    @Value("${deepseek.api.url:https://api.deepseek.com}")
-    private String apiUrl;
+    private static final String BUSY_MESSAGE =
+        "I'm answering a lot of questions right now. Please try again in a moment.";
 
-    private DeepseekApiService deepseekApiService;
+    private static final String TOO_LONG_MESSAGE =
+        "Your message is too long for me to answer. Please shorten it and try again.";
+
+    private final LlmClient llmClient;
+    private final LlmRouter llmRouter;
+    private final LlmConcurrencyLimiter concurrencyLimiter;
+    private final SingleFlightRegistry singleFlight;
+    private final LlmMetrics llmMetrics;
+    private final PromptBudget promptBudget;
+    private final ChatConversationService conversations;
+    private final long streamTimeoutMs;
 
     // Professional Physiotherapy System Prompt
     private static final String PHYSIOTHERAPY_SYSTEM_PROMPT = """
@@ -121,33 +141,18 @@ public class ChatController {
         Now, please respond to the patient's inquiry with your professional physiotherapy expertise.
         """;
 
-    @PostConstruct
-    public void init() {
-        // Create OkHttpClient with interceptor to add API key
-        OkHttpClient client = new OkHttpClient.Builder()
-                .addInterceptor(new Interceptor() {
-                    @Override
-                    public Response intercept(Chain chain) throws IOException {
-                        Request original = chain.request();
-                        Request request = original.newBuilder()
-                                .header("Authorization", "Bearer " + apiKey)
-                                .header("Content-Type", "application/json")
-                                .method(original.method(), original.body())
-                                .build();
-                        return chain.proceed(request);
-                    }
-                })
-                .connectTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
-                .readTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
-                .writeTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
-                .build();
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(apiUrl + "/")
-                .client(client)
-                .addConverterFactory(JacksonConverterFactory.create())
-                .build();
-        this.deepseekApiService = retrofit.create(DeepseekApiService.class);
+    public ChatController(LlmClient llmClient, LlmRouter llmRouter, LlmConcurrencyLimiter concurrencyLimiter,
+                          SingleFlightRegistry singleFlight, LlmMetrics llmMetrics, PromptBudget promptBudget,
+                          ChatConversationService conversations,
+                          @Value("${chat.stream.timeout-ms:120000}") long streamTimeoutMs) {
+        this.llmClient = llmClient;
+        this.llmRouter = llmRouter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.singleFlight = singleFlight;
+        this.llmMetrics = llmMetrics;
+        this.promptBudget = promptBudget;
+        this.conversations = conversations;
+        this.streamTimeoutMs = streamTimeoutMs;
     }
 
     /**
@@ -164,37 +169,172 @@ public class ChatController {
      * - General physiotherapy education
      * - Safety precautions and best practices
      * 
+     * Messages belong to a conversation: send the X-Conversation-Id header from the previous
+     * answer to continue it, or omit it to start a new one. Earlier turns are sent to the AI
+     * within a token budget (see {@link ChatConversationService}); answers are capped at the
+     * chat endpoint's output budget (see {@link PromptBudget}).
+     * 
      * @param userMessage The user's message
-     * @return ResponseEntity containing the AI-generated response
+     * @param conversationId The conversation to continue, or null to start a new one
+     * @param principal Authenticated user, or null; only signed-in users' conversations are stored
+     * @return Future ResponseEntity containing the AI-generated response and the conversation's
+     *         X-Conversation-Id header, 413 when the message is over the input budget, or 503
+     *         when too many chats are in flight
      */
     @PostMapping("/send")
-    public ResponseEntity<String> sendMessage(@RequestBody String userMessage) {
+    public CompletableFuture<ResponseEntity<String>> sendMessage(
+            @RequestBody String userMessage,
+            @RequestHeader(value = CONVERSATION_HEADER, required = false) String conversationId,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+        logger.info("Received chat message: {}", userMessage);
+        
+        ChatConversationService.Conversation conversation =
+            conversations.open(conversationId, principal != null ? principal.getUserId() : null);
+        String conversationHeader = conversation.getId().toString();
+        ChatCompletionRequest request = new ChatCompletionRequest("deepseek-chat",
+            conversations.buildMessages(conversation, PHYSIOTHERAPY_SYSTEM_PROMPT, userMessage), 0.7, false);
         try {
-            logger.info("Received chat message: {}", userMessage);
-            
-            // Create system message with physiotherapy prompt
-            Message systemMessage = new Message(Role.SYSTEM, PHYSIOTHERAPY_SYSTEM_PROMPT);
-            Message userMsg = new Message(Role.USER, userMessage);
-            List<Message> messages = Arrays.asList(systemMessage, userMsg);
-            
-            ChatCompletionRequest request = new ChatCompletionRequest("deepseek-chat", messages, 0.7, false);
-            
-            logger.debug("Calling DeepSeek API with request: {}", request);
-            retrofit2.Response<ChatCompletionResponse> response = deepseekApiService.createChatCompletion(request).execute();
-            
-            if (response.isSuccessful() && response.body() != null) {
-                String aiResponse = response.body().getChoices().get(0).getMessage().getContent();
+            promptBudget.apply("chat", request);
+        } catch (PromptBudget.PromptTooLargeException e) {
+            logger.warn(e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .header(CONVERSATION_HEADER, conversationHeader).body(TOO_LONG_MESSAGE));
+        }
+        
+        // The servlet thread is released here; the answer is written when the LLM call completes.
+        // Identical opening messages already in flight share that call, and only its leader takes a
+        // permit; later messages depend on their conversation's history and are never shared.
+        logger.debug("Calling LLM router with request: {}", request);
+        Supplier<CompletableFuture<ChatCompletionResponse>> call = () -> concurrencyLimiter.withPermit("chat",
+                () -> llmMetrics.timed("chat", request, () -> llmRouter.complete(request)));
+        CompletableFuture<ChatCompletionResponse> answer = conversation.isEmpty()
+            ? singleFlight.join("chat|" + userMessage, call)
+            : call.get();
+        return answer
+            .thenApply(response -> {
+                String aiResponse = response.getChoices().get(0).getMessage().getContent();
+                promptBudget.recordFinish("chat", response.getChoices().get(0).getFinishReason());
                 logger.info("Received AI response: {}", aiResponse);
-                return ResponseEntity.ok(aiResponse);
-            } else {
-                logger.error("DeepSeek API call failed. Response code: {}, Error body: {}", 
-                           response.code(), 
-                           response.errorBody() != null ? response.errorBody().string() : "null");
-                return ResponseEntity.ok("I'm sorry, I'm having trouble processing your request right now. Please try again later.");
+                conversations.recordTurn(conversation, userMessage, aiResponse);
+                return ResponseEntity.ok().header(CONVERSATION_HEADER, conversationHeader).body(aiResponse);
+            })
+            .exceptionally(e -> {
+                if (LlmConcurrencyLimiter.isRejection(e)) {
+                    return busy();
+                }
+                logger.error("LLM call failed: {}", e.getMessage());
+                return ResponseEntity.ok().header(CONVERSATION_HEADER, conversationHeader).body(APOLOGY);
+            });
+    }
+
+    /**
+     * Streams the chatbot's answer to the client as Server-Sent Events while it is generated.
+     * 
+     * Events:
+     * - token: the next piece of the answer as JSON, {"t": "..."} (concatenate t in order); JSON keeps
+     *   a token's leading space, which SSE clients strip from plain data lines
+     * - done: generation finished; data is the finish reason
+     * - error: generation failed or the message is over the input budget; data is a user-facing message
+     * 
+     * The upstream request is cancelled as soon as the client disconnects or the
+     * emitter times out, so abandoned answers stop consuming provider tokens.
+     * Streaming always goes to DeepSeek directly; only /send is routed across providers.
+     * Conversations work as for /send; the answer is added to the conversation once it is complete.
+     * 
+     * @param userMessage The user's message
+     * @param conversationId The conversation to continue, or null to start a new one
+     * @param principal Authenticated user, or null
+     * @param servletResponse Carries the conversation's X-Conversation-Id header
+     * @return SseEmitter that receives the answer token by token
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessage(@RequestBody String userMessage,
+                                    @RequestHeader(value = CONVERSATION_HEADER, required = false) String conversationId,
+                                    @AuthenticationPrincipal AuthenticatedUser principal,
+                                    HttpServletResponse servletResponse) {
+        logger.info("Received streaming chat message: {}", userMessage);
+        
+        ChatConversationService.Conversation conversation =
+            conversations.open(conversationId, principal != null ? principal.getUserId() : null);
+        servletResponse.setHeader(CONVERSATION_HEADER, conversation.getId().toString());
+        
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        ChatCompletionRequest request = new ChatCompletionRequest("deepseek-chat",
+            conversations.buildMessages(conversation, PHYSIOTHERAPY_SYSTEM_PROMPT, userMessage), 0.7, true);
+        try {
+            promptBudget.apply("chat-stream", request);
+        } catch (PromptBudget.PromptTooLargeException e) {
+            logger.warn(e.getMessage());
+            send(emitter, "error", TOO_LONG_MESSAGE);
+            emitter.complete();
+            return emitter;
+        }
+        if (!concurrencyLimiter.tryAcquire("chat-stream")) {
+            send(emitter, "error", BUSY_MESSAGE);
+            emitter.complete();
+            return emitter;
+        }
+        
+        LlmMetrics.StreamTimer timer = llmMetrics.startStream("chat-stream", request.getModel());
+        StringBuilder answer = new StringBuilder();
+        
+        Call<ResponseBody> upstream = llmClient.streamChat(request, new ChatStreamListener() {
+            @Override
+            public void onToken(String token) {
+                timer.firstToken();
+                answer.append(token);
+                sendToken(emitter, token);
+            }
+
+            @Override
+            public void onComplete(String finishReason) {
+                timer.complete(finishReason);
+                promptBudget.recordFinish("chat-stream", finishReason);
+                conversations.recordTurn(conversation, userMessage, answer.toString());
+                send(emitter, "done", finishReason != null ? finishReason : "stop");
+                emitter.complete();
             }
-        } catch (IOException e) {
-            logger.error("Error processing request", e);
-            return ResponseEntity.ok("I'm sorry, I'm having trouble processing your request right now. Please try again later.");
+
+            @Override
+            public void onError(Throwable error) {
+                timer.error(error);
+                logger.error("Streaming chat failed: {}", error.getMessage());
+                send(emitter, "error", APOLOGY);
+                emitter.complete();
+            }
+        });
+        
+        // Client went away (or took too long): stop generating upstream. onCompletion runs in every case.
+        emitter.onCompletion(() -> {
+            upstream.cancel();
+            concurrencyLimiter.release("chat-stream");
+        });
+        emitter.onTimeout(upstream::cancel);
+        emitter.onError(error -> upstream.cancel());
+        
+        return emitter;
+    }
+
+    private ResponseEntity<String> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "2")
+            .body(BUSY_MESSAGE);
+    }
+
+    private void send(SseEmitter emitter, String event, String data) {
+        send(emitter, SseEmitter.event().name(event).data(data));
+    }
+
+    private void sendToken(SseEmitter emitter, String token) {
+        send(emitter, SseEmitter.event().name("token").data(Map.of("t", token), MediaType.APPLICATION_JSON));
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // The client disconnected; completing the emitter cancels the upstream call
+            emitter.completeWithError(e);
         }
     }
 }
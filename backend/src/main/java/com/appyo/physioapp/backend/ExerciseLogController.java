@@ -1,7 +1,8 @@
 package com.appyo.physioapp.backend;
 
-import com.appyo.physioapp.auth.JwtUtil;
+import com.appyo.physioapp.auth.AuthenticatedUser;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
@@ -39,11 +40,9 @@ public class ExerciseLogController {
     
     private static final Logger logger = LoggerFactory.getLogger(ExerciseLogController.class);
     private final JdbcTemplate jdbcTemplate;
-    private final JwtUtil jwtUtil;
     
-    public ExerciseLogController(JdbcTemplate jdbcTemplate, JwtUtil jwtUtil) {
+    public ExerciseLogController(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
-        this.jwtUtil = jwtUtil;
     }
     
     /**
@@ -57,26 +56,25 @@ public class ExerciseLogController {
      * - Exercise completion details (sets, reps, skip status)
      * - Targeted muscle groups and session notes
      * 
-     * @param authHeader JWT authentication token for user verification
+     * @param principal Authenticated user resolved from the JWT bearer token
      * @param sessionData Map containing session information and exercise details
      * @return ResponseEntity with success status and confirmation message
      */
     @PostMapping
     public ResponseEntity<Map<String, Object>> logExerciseSession(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestBody Map<String, Object> sessionData) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Validate JWT token for authentication
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
+            // Principal is published by JwtAuthenticationFilter when the bearer token is valid
+            if (principal == null) {
                 response.put("success", false);
                 response.put("message", "Invalid authentication token");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.extractUsername(token);
+            String username = principal.getUsername();
             logger.info("Logging exercise session for user: {}", username);
             
             // Extract and validate session data
@@ -223,7 +221,7 @@ public class ExerciseLogController {
      * 
      * @param userId The unique identifier of the user
      * @param days Number of days to look back (default: 7)
-     * @param authHeader JWT authentication token
+     * @param principal Authenticated user resolved from the JWT bearer token
      * @return ResponseEntity containing exercise logs or error details
      * 
      * @apiNote Returns logs in descending chronological order with the following structure:
@@ -247,19 +245,18 @@ public class ExerciseLogController {
     public ResponseEntity<Map<String, Object>> getUserRecentLogs(
             @PathVariable String userId,
             @RequestParam(defaultValue = "7") int days,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Validate JWT token
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
+            // Principal is published by JwtAuthenticationFilter when the bearer token is valid
+            if (principal == null) {
                 response.put("success", false);
                 response.put("message", "Invalid authentication token");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.extractUsername(token);
+            String username = principal.getUsername();
             logger.info("Fetching recent exercise logs for user: {} (last {} days)", username, days);
             
             // Query workout_log table with plan information
@@ -415,26 +412,25 @@ public class ExerciseLogController {
      * Allows users to add exercise sessions for any date from the progress page.
      * 
      * @param request The exercise session creation request
-     * @param authHeader JWT authentication token
+     * @param principal Authenticated user resolved from the JWT bearer token
      * @return ResponseEntity containing the created session or error details
      */
     @PostMapping("/session/direct")
     public ResponseEntity<Map<String, Object>> createDirectExerciseSession(
             @RequestBody Map<String, Object> request,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Validate JWT token
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
+            // Principal is published by JwtAuthenticationFilter when the bearer token is valid
+            if (principal == null) {
                 response.put("success", false);
                 response.put("message", "Invalid authentication token");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.extractUsername(token);
+            String username = principal.getUsername();
             String userId = request.get("userId").toString();
             String sessionDate = request.get("sessionDate").toString();
             String exerciseName = request.get("exerciseName").toString();
@@ -475,7 +471,7 @@ public class ExerciseLogController {
      * @param userId The user ID
      * @param startDate Start date in YYYY-MM-DD format
      * @param endDate End date in YYYY-MM-DD format
-     * @param authHeader JWT authentication token
+     * @param principal Authenticated user resolved from the JWT bearer token
      * @return ResponseEntity containing the sessions grouped by date
      */
     @GetMapping("/sessions/calendar")
@@ -483,20 +479,19 @@ public class ExerciseLogController {
             @RequestParam String userId,
             @RequestParam String startDate,
             @RequestParam String endDate,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Validate JWT token
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
+            // Principal is published by JwtAuthenticationFilter when the bearer token is valid
+            if (principal == null) {
                 response.put("success", false);
                 response.put("message", "Invalid authentication token");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.extractUsername(token);
+            String username = principal.getUsername();
             
             // Query sessions for the date range
             String sql = """
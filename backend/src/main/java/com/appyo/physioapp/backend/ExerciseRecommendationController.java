@@ -1,31 +1,35 @@
 package com.appyo.physioapp.backend;
 
-import com.appyo.physioapp.auth.JwtUtil;
+import com.appyo.physioapp.auth.AuthenticatedUser;
+import com.appyo.physioapp.auth.UserIdResolver;
 import com.appyo.physioapp.backend.model.*;
-import com.appyo.physioapp.backend.service.DeepseekApiService;
+import com.appyo.physioapp.backend.service.ExercisePlanCache;
+import com.appyo.physioapp.backend.service.ExercisePlanService;
+import com.appyo.physioapp.backend.service.LocalPlanGenerator;
+import com.appyo.physioapp.backend.service.TempDataService;
+import com.appyo.physioapp.llm.LlmConcurrencyLimiter;
+import com.appyo.physioapp.user.UserContext;
+import com.appyo.physioapp.user.UserContextService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import retrofit2.Retrofit;
-import retrofit2.converter.jackson.JacksonConverterFactory;
-import okhttp3.OkHttpClient;
-import okhttp3.Interceptor;
-import okhttp3.Request;
-import okhttp3.Response;
 
-import javax.annotation.PostConstruct;
 import java.util.*;
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ExerciseRecommendationController
  * 
  * This controller handles AI-powered exercise plan generation and recommendation functionality.
- * It integrates with the DeepSeek AI API to create personalized exercise plans based on user
+ * It uses the LLM router (DeepSeek, with Gemini as failover) to create personalized exercise plans based on user
  * preferences, injury history, and fitness goals.
  * 
  * Key Features:
@@ -44,49 +48,37 @@ import java.io.IOException;
 public class ExerciseRecommendationController {
     
     private static final Logger logger = LoggerFactory.getLogger(ExerciseRecommendationController.class);
-    private DeepseekApiService deepseekApiService;
-    private final JdbcTemplate jdbcTemplate;
-    private final JwtUtil jwtUtil;
-
-    @Value("${deepseek.api.key:}")
-    private String apiKey;
-
-    @Value("${deepseek.api.url:https://api.deepseek.com/v1}")
-    private String apiUrl;
+    private final ExercisePlanService planService;
+    private final ExercisePlanCache planCache;
+    private final LocalPlanGenerator localPlanGenerator;
+    private final TempDataService tempDataService;
+    private final ObjectMapper objectMapper;
+    private final UserContextService userContextService;
+    private final UserIdResolver userIdResolver;
+    private final Map<String, Counter> sourceCounters = new HashMap<>();
+    private final long deadlineMs;
+    private final boolean upgradeEnabled;
 
     @Autowired
-    public ExerciseRecommendationController(JdbcTemplate jdbcTemplate, JwtUtil jwtUtil) {
-        this.jdbcTemplate = jdbcTemplate;
-        this.jwtUtil = jwtUtil;
-    }
-    
-    @PostConstruct
-    public void init() {
-        // Create OkHttpClient with interceptor to add API key
-        OkHttpClient client = new OkHttpClient.Builder()
-                .addInterceptor(new Interceptor() {
-                    @Override
-                    public Response intercept(Chain chain) throws IOException {
-                        Request original = chain.request();
-                        Request request = original.newBuilder()
-                                .header("Authorization", "Bearer " + apiKey)
-                                .header("Content-Type", "application/json")
-                                .method(original.method(), original.body())
-                                .build();
-                        return chain.proceed(request);
-                    }
-                })
-                .connectTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
-                .readTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
-                .writeTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
-                .build();
-
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(apiUrl + "/")
-                .client(client)
-                .addConverterFactory(JacksonConverterFactory.create())
-                .build();
-        this.deepseekApiService = retrofit.create(DeepseekApiService.class);
+    public ExerciseRecommendationController(ExercisePlanService planService, ExercisePlanCache planCache,
+                                            LocalPlanGenerator localPlanGenerator, TempDataService tempDataService,
+                                            ObjectMapper objectMapper,
+                                            UserContextService userContextService, UserIdResolver userIdResolver,
+                                            MeterRegistry meterRegistry,
+                                            @Value("${plan.generation.deadline-ms:12000}") long deadlineMs,
+                                            @Value("${plan.generation.upgrade-enabled:true}") boolean upgradeEnabled) {
+        this.planService = planService;
+        this.planCache = planCache;
+        this.localPlanGenerator = localPlanGenerator;
+        this.tempDataService = tempDataService;
+        this.objectMapper = objectMapper;
+        this.userContextService = userContextService;
+        this.userIdResolver = userIdResolver;
+        this.deadlineMs = deadlineMs;
+        this.upgradeEnabled = upgradeEnabled;
+        for (String source : List.of("ai", "cache", "local")) {
+            sourceCounters.put(source, Counter.builder("plan.generation.responses").tag("source", source).register(meterRegistry));
+        }
     }
     
     /**
@@ -97,9 +89,16 @@ public class ExerciseRecommendationController {
      * considers factors such as injury history, fitness goals, equipment access, and
      * targeted muscle groups.
      * 
+     * If the AI has not answered within plan.generation.deadline-ms, fails, or is at its
+     * concurrency limit, a plan is built from the exercise catalog instead ("source": "local").
+     * An AI plan that arrives after the deadline is cached and saved as the user's latest
+     * generated plan.
+     * 
      * @param request The exercise plan request containing user preferences and session data
-     * @param authHeader JWT authentication token
-     * @return ResponseEntity containing the generated exercise plan or error details
+     * @param regenerate If true, skip the plan cache and ask the AI for a fresh plan
+     * @param principal Authenticated user resolved from the JWT bearer token
+     * @return Future ResponseEntity containing the exercise plan and its source (ai, cache or local);
+     *         completed off the servlet thread when the AI answers or the deadline passes
      * 
      * @apiNote The generated plan includes:
      *          - Exercise name, description, and difficulty level
@@ -108,411 +107,173 @@ public class ExerciseRecommendationController {
      *          - Estimated duration and targeted muscle groups
      */
     @PostMapping("/exercise")
-    public ResponseEntity<Map<String, Object>> generateExercisePlan(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> generateExercisePlan(
             @RequestBody ExercisePlanRequest request,
-            @RequestHeader("Authorization") String authHeader) {
+            @RequestParam(defaultValue = "false") boolean regenerate,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
         
         Map<String, Object> response = new HashMap<>();
         
-        try {
-            // Extract username from JWT token
-            String token = authHeader.replace("Bearer ", "");
-            String username = jwtUtil.extractUsername(token);
-            
-            if (username == null) {
-                response.put("success", false);
-                response.put("message", "Invalid authentication token");
-                return ResponseEntity.status(401).body(response);
-            }
-            
-            logger.info("Generating exercise plan for user: {}", username);
-            
-            // Get user data from database (with fallback for new users)
-            Map<String, Object> userData = getUserData(request.getUserId());
-            
-            // Build comprehensive prompt combining database and session data
-            String prompt = buildPrompt(userData, request);
-            logger.debug("Generated prompt for user {}: {}", username, prompt);
-            
-            // Generate exercise plan using AI
-            String aiResponse = null;
-            try {
-                Message message = new Message(Role.USER, prompt);
-                List<Message> messages = Arrays.asList(message);
-                
-                ChatCompletionRequest chatRequest = new ChatCompletionRequest("deepseek-chat", messages, 0.7, false);
-                
-                retrofit2.Response<ChatCompletionResponse> apiResponse = deepseekApiService.createChatCompletion(chatRequest).execute();
-                
-                if (apiResponse.isSuccessful() && apiResponse.body() != null) {
-                    aiResponse = apiResponse.body().getChoices().get(0).getMessage().getContent();
-                    logger.debug("AI Response received: {}", aiResponse);
-                } else {
-                    logger.error("DeepSeek API call failed: {}", apiResponse.errorBody() != null ? apiResponse.errorBody().string() : "Unknown error");
-                }
-            } catch (IOException e) {
-                logger.error("Error calling DeepSeek API", e);
-            }
-            
-            if (aiResponse == null || aiResponse.trim().isEmpty()) {
-                response.put("success", false);
-                response.put("message", "Failed to generate exercise plan. Please try again.");
-                return ResponseEntity.status(500).body(response);
-            }
-            
-            // Parse AI response into structured exercise plan
-            List<Exercise> exercises = parseExercisePlan(aiResponse);
-            if (exercises.isEmpty()) {
-                response.put("success", false);
-                response.put("message", "Generated exercise plan is invalid. Please try again.");
-                return ResponseEntity.status(500).body(response);
+        if (principal == null) {
+            response.put("success", false);
+            response.put("message", "Invalid authentication token");
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).body(response));
+        }
+        
+        String username = principal.getUsername();
+        logger.info("Generating exercise plan for user: {}", username);
+        
+        // Get the cached user context (with fallback for new users)
+        UserContext userData = getUserData(principal);
+        
+        // Users who picked the same session and have the same profile get the same plan
+        String cacheKey = ExercisePlanCache.canonicalKey(request, userData);
+        if (regenerate) {
+            planCache.recordBypass();
+        } else {
+            List<ExercisePlanResponse.Exercise> cached = planCache.get(cacheKey);
+            if (cached != null) {
+                logger.info("Serving cached exercise plan for user: {}", username);
+                sourceCounters.get("cache").increment();
+                return CompletableFuture.completedFuture(planResponse(cached, request, "cache"));
             }
+        }
+        
+        try {
+            CompletableFuture<ResponseEntity<Map<String, Object>>> result = new CompletableFuture<>();
+            // Completes after the deadline unless the AI answers first and cancels it
+            CompletableFuture<Void> deadline = new CompletableFuture<>();
+            
+            // Generate exercise plan using AI; the servlet thread is released while the LLM works
+            planService.generateWithAi(request, userData, cacheKey, "recommendations")
+                .whenComplete((generated, e) -> {
+                    deadline.cancel(false);
+                    List<ExercisePlanResponse.Exercise> exercises = List.of();
+                    if (e == null) {
+                        exercises = generated;
+                    } else if (LlmConcurrencyLimiter.isRejection(e)) {
+                        logger.warn("Plan generation is at its concurrency limit, using the local plan for {}", username);
+                    } else {
+                        logger.error("LLM call failed: {}", e.getMessage());
+                    }
+                    
+                    if (exercises.isEmpty()) {
+                        serveLocal(result, request, userData);
+                        return;
+                    }
+                    if (serve(result, exercises, request, "ai")) {
+                        logger.info("Successfully generated exercise plan for user: {} with {} exercises",
+                                username, exercises.size());
+                    } else {
+                        // The user already has the local plan; offer the AI plan as an upgrade
+                        saveUpgrade(principal, request, exercises);
+                    }
+                });
             
-            // Convert Exercise objects to ExercisePlanResponse.Exercise objects
-            List<ExercisePlanResponse.Exercise> responseExercises = new ArrayList<>();
-            for (Exercise exercise : exercises) {
-                ExercisePlanResponse.Exercise responseExercise = new ExercisePlanResponse.Exercise();
-                responseExercise.setName(exercise.getName());
-                responseExercise.setDescription(exercise.getDescription());
-                responseExercise.setSets(String.valueOf(exercise.getSets()));
-                responseExercise.setReps(String.valueOf(exercise.getReps()));
-                responseExercise.setEquipment(exercise.getEquipment());
-                responseExercise.setDifficulty(exercise.getDifficulty());
-                responseExercise.setInstructions(exercise.getInstructions());
-                responseExercises.add(responseExercise);
+            // If the AI misses the deadline, answer with the local plan now; the AI call keeps running
+            if (deadlineMs > 0) {
+                deadline.completeOnTimeout(null, deadlineMs, TimeUnit.MILLISECONDS).thenRun(() -> {
+                    if (serveLocal(result, request, userData)) {
+                        logger.info("AI plan for {} missed the {} ms deadline, served the local plan", username, deadlineMs);
+                    }
+                });
             }
-            
-            // Create response with exercise plan
-            ExercisePlanResponse planResponse = new ExercisePlanResponse();
-            planResponse.setExercises(responseExercises);
-            planResponse.setPlanName(generatePlanName(request));
-            planResponse.setDuration(request.getDuration());
-            planResponse.setTargetedAreas(String.join(", ", request.getTargetedAreas()));
-            
-            response.put("success", true);
-            response.put("plan", planResponse);
-            response.put("message", "Exercise plan generated successfully");
-            
-            logger.info("Successfully generated exercise plan for user: {} with {} exercises", 
-                       username, exercises.size());
-            
-            return ResponseEntity.ok(response);
+            return result;
             
         } catch (Exception e) {
             logger.error("Error generating exercise plan", e);
             response.put("success", false);
             response.put("message", "Internal server error while generating exercise plan");
             response.put("error", e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return CompletableFuture.completedFuture(ResponseEntity.status(500).body(response));
         }
     }
     
     /**
-     * Retrieves user profile data from the database for exercise plan generation.
-     * 
-     * This method fetches comprehensive user information including injury history,
-     * fitness goals, equipment access, and other relevant data needed for
-     * personalized exercise recommendations.
+     * Answers with a plan from the exercise catalog, for when the AI is unavailable or too slow.
+     * The plan is only built if the request has not been answered yet.
      * 
-     * @param userId The unique identifier of the user
-     * @return Map containing user profile data, or null if user not found
+     * @return true if this plan was the one served
      */
-    private Map<String, Object> getUserData(String userId) {
-        try {
-            logger.debug("Fetching user data for userId: {}", userId);
-            
-            if (userId == null || userId.trim().isEmpty()) {
-                logger.warn("UserId is null or empty");
-                return null;
-            }
-            
-            // Query user profile information
-            String userSql = """
-                SELECT name, age, gender, weight, height, fitness_goal, injury_history, 
-                       chronic_diseases, equipment_access, email, phone
-                FROM "user" 
-                WHERE user_id = CAST(? AS UUID)
-                """;
-            
-            List<Map<String, Object>> userResults = jdbcTemplate.queryForList(userSql, userId);
-            if (userResults.isEmpty()) {
-                logger.warn("No user found for userId: {}", userId);
-                return null;
-            }
-            
-            Map<String, Object> userData = userResults.get(0);
-            
-            // Query injury information if available
-            try {
-                String injurySql = """
-                    SELECT injury_type, injury_area, severity, recovery_status, 
-                           muscle_groups_to_avoid, goals_for_injury, notes 
-                    FROM injury 
-                    WHERE user_id = CAST(? AS UUID)
-                    """;
-                
-                List<Map<String, Object>> injuryResults = jdbcTemplate.queryForList(injurySql, userId);
-                if (!injuryResults.isEmpty()) {
-                    Map<String, Object> injuryData = injuryResults.get(0);
-                    userData.putAll(injuryData);
-                }
-            } catch (Exception e) {
-                logger.warn("Could not fetch injury data for user {}: {}", userId, e.getMessage());
-                // Continue without injury data
-            }
-            
-            logger.debug("Successfully retrieved user data for userId: {}", userId);
-            return userData;
-            
-        } catch (Exception e) {
-            logger.warn("Error fetching user data for userId {}: {}", userId, e.getMessage());
-            // Return null instead of throwing exception to allow fallback
-            return null;
+    private boolean serveLocal(CompletableFuture<ResponseEntity<Map<String, Object>>> result,
+                               ExercisePlanRequest request, UserContext userData) {
+        if (result.isDone()) {
+            return false;
         }
+        return serve(result, localPlanGenerator.generate(request, userData), request, "local");
     }
     
     /**
-     * Builds a comprehensive prompt for AI exercise plan generation.
-     * 
-     * This method combines user profile data from the database with current session
-     * preferences to create a detailed prompt that guides the AI in generating
-     * personalized exercise recommendations.
+     * Answers the request with the exercises unless it has been answered already, and counts the
+     * served plan's source in plan.generation.responses.
      * 
-     * @param userData User profile information from database (can be null for new users)
-     * @param request Current session preferences and requirements
-     * @return Formatted prompt string for AI processing
+     * @return true if this plan was the one served
      */
-    private String buildPrompt(Map<String, Object> userData, ExercisePlanRequest request) {
-        StringBuilder prompt = new StringBuilder();
-        
-        prompt.append("Create a ").append(request.getDuration()).append("-minute exercise plan focusing on ");
-        prompt.append(String.join(", ", request.getTargetedAreas()));
-        
-        if (request.getFocusType() != null && !request.getFocusType().isEmpty()) {
-            prompt.append(" with ").append(request.getFocusType()).append(" focus");
+    private boolean serve(CompletableFuture<ResponseEntity<Map<String, Object>>> result,
+                          List<ExercisePlanResponse.Exercise> exercises, ExercisePlanRequest request, String source) {
+        if (result.isDone() || !result.complete(planResponse(exercises, request, source))) {
+            return false;
         }
-        
-        prompt.append(". ");
-        
-        if (userData != null) {
-            if (userData.get("fitness_goal") != null && !userData.get("fitness_goal").toString().isEmpty()) {
-                prompt.append("User's fitness goal: ").append(userData.get("fitness_goal")).append(". ");
-            }
-            if (userData.get("injury_history") != null && !userData.get("injury_history").toString().isEmpty()) {
-                prompt.append("Injury history: ").append(userData.get("injury_history")).append(". ");
-            }
-        }
-        
-        prompt.append("Provide 3-5 exercises in JSON format with the following structure: ");
-        prompt.append("[{\"name\": \"Exercise Name\", \"description\": \"Brief description\", \"sets\": \"3\", \"reps\": \"10-15\", \"equipment\": \"None/Dumbbells/etc.\", \"difficulty\": \"Beginner/Intermediate/Advanced\", \"instructions\": \"Step-by-step instructions\"}]");
-        
-        return prompt.toString();
+        sourceCounters.get(source).increment();
+        return true;
     }
     
     /**
-     * Parses the AI-generated response into structured Exercise objects.
+     * Wraps the exercises in the plan response; name, duration and areas come from this request.
      * 
-     * This method extracts exercise information from the AI response and converts
-     * it into a list of Exercise objects that can be used by the frontend.
-     * 
-     * @param aiResponse Raw response from the AI service
-     * @return List of parsed Exercise objects
+     * @param source Where the exercises came from: "ai", "cache" or "local"
      */
-    private List<Exercise> parseExercisePlan(String aiResponse) {
-        List<Exercise> exercises = new ArrayList<>();
-        
-        try {
-            logger.debug("Parsing AI response: {}", aiResponse);
-            
-            // Extract JSON array from AI response
-            int startIndex = aiResponse.indexOf('[');
-            int endIndex = aiResponse.lastIndexOf(']');
-            
-            if (startIndex == -1 || endIndex == -1) {
-                logger.warn("No valid JSON array found in AI response, trying to create fallback exercises");
-                // Create fallback exercises
-                exercises.add(createFallbackExercise("Push-ups", "Basic upper body exercise", 3, 10, "None", "Beginner", "1. Start in plank position\n2. Lower your body\n3. Push back up"));
-                exercises.add(createFallbackExercise("Squats", "Basic lower body exercise", 3, 15, "None", "Beginner", "1. Stand with feet shoulder-width apart\n2. Lower your body\n3. Stand back up"));
-                return exercises;
-            }
-            
-            String jsonArray = aiResponse.substring(startIndex, endIndex + 1);
-            logger.debug("Extracted JSON array: {}", jsonArray);
-            
-            // Split by exercise objects and parse each one
-            String[] exerciseStrings = jsonArray.split("\\},\\s*\\{");
-            
-            for (String exerciseStr : exerciseStrings) {
-                // Clean up the string
-                exerciseStr = exerciseStr.replaceAll("[\\[\\]{}]", "").trim();
-                
-                if (exerciseStr.isEmpty()) continue;
-                
-                Exercise exercise = parseExerciseFromString(exerciseStr);
-                if (exercise != null) {
-                    exercises.add(exercise);
-                }
-            }
-            
-            // If no exercises were parsed, create fallback exercises
-            if (exercises.isEmpty()) {
-                logger.warn("No exercises parsed, creating fallback exercises");
-                exercises.add(createFallbackExercise("Push-ups", "Basic upper body exercise", 3, 10, "None", "Beginner", "1. Start in plank position\n2. Lower your body\n3. Push back up"));
-                exercises.add(createFallbackExercise("Squats", "Basic lower body exercise", 3, 15, "None", "Beginner", "1. Stand with feet shoulder-width apart\n2. Lower your body\n3. Stand back up"));
-            }
-            
-            logger.info("Successfully parsed {} exercises from AI response", exercises.size());
-            
-        } catch (Exception e) {
-            logger.error("Error parsing exercise plan from AI response", e);
-            // Create fallback exercises on error
-            exercises.add(createFallbackExercise("Push-ups", "Basic upper body exercise", 3, 10, "None", "Beginner", "1. Start in plank position\n2. Lower your body\n3. Push back up"));
-            exercises.add(createFallbackExercise("Squats", "Basic lower body exercise", 3, 15, "None", "Beginner", "1. Stand with feet shoulder-width apart\n2. Lower your body\n3. Stand back up"));
-        }
-        
-        return exercises;
-    }
-    
-    /**
-     * Creates a fallback exercise when parsing fails.
-     */
-    private Exercise createFallbackExercise(String name, String description, int sets, int reps, String equipment, String difficulty, String instructions) {
-        Exercise exercise = new Exercise();
-        exercise.setName(name);
-        exercise.setDescription(description);
-        exercise.setSets(sets);
-        exercise.setReps(reps);
-        exercise.setEquipment(equipment);
-        exercise.setDifficulty(difficulty);
-        exercise.setInstructions(instructions);
-        return exercise;
+    private ResponseEntity<Map<String, Object>> planResponse(List<ExercisePlanResponse.Exercise> exercises,
+                                                             ExercisePlanRequest request, String source) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("plan", planService.toPlan(exercises, request));
+        response.put("source", source);
+        response.put("message", "Exercise plan generated successfully");
+        return ResponseEntity.ok(response);
     }
     
     /**
-     * Parses a single exercise string into an Exercise object.
-     * 
-     * @param exerciseStr String representation of exercise data
-     * @return Exercise object or null if parsing fails
+     * Stores an AI plan that arrived after the local plan was served, so the client can pick it
+     * up from GET /api/temp/plans/{userId}.
      */
-    private Exercise parseExerciseFromString(String exerciseStr) {
+    private void saveUpgrade(AuthenticatedUser principal, ExercisePlanRequest request,
+                             List<ExercisePlanResponse.Exercise> exercises) {
+        if (!upgradeEnabled) {
+            return;
+        }
         try {
-            Exercise exercise = new Exercise();
-            
-            // Extract exercise properties using regex or string manipulation
-            // This is a simplified parser - in production, use proper JSON parsing
-            
-            // Extract name
-            if (exerciseStr.contains("\"name\":")) {
-                String name = extractValue(exerciseStr, "name");
-                exercise.setName(name != null ? name : "Unknown Exercise");
-            }
-            
-            // Extract description
-            if (exerciseStr.contains("\"description\":")) {
-                String description = extractValue(exerciseStr, "description");
-                exercise.setDescription(description != null ? description : "");
+            UUID userId = userIdResolver.resolveUserId(principal);
+            if (userId != null) {
+                tempDataService.saveGeneratedPlan(userId, objectMapper.writeValueAsString(planService.toPlan(exercises, request)));
+                logger.info("Saved late AI plan for {} as an upgrade", principal.getUsername());
             }
-            
-            // Extract sets
-            if (exerciseStr.contains("\"sets\":")) {
-                String sets = extractValue(exerciseStr, "sets");
-                try {
-                    int setsValue = sets != null ? Integer.parseInt(sets) : 3;
-                    exercise.setSets(setsValue);
-                } catch (NumberFormatException e) {
-                    exercise.setSets(3);
-                }
-            }
-            
-            // Extract reps
-            if (exerciseStr.contains("\"reps\":")) {
-                String reps = extractValue(exerciseStr, "reps");
-                try {
-                    // Handle ranges like "10-15" by taking the first number
-                    if (reps != null && reps.contains("-")) {
-                        reps = reps.split("-")[0];
-                    }
-                    int repsValue = reps != null ? Integer.parseInt(reps) : 10;
-                    exercise.setReps(repsValue);
-                } catch (NumberFormatException e) {
-                    exercise.setReps(10);
-                }
-            }
-            
-            // Extract equipment
-            if (exerciseStr.contains("\"equipment\":")) {
-                String equipment = extractValue(exerciseStr, "equipment");
-                exercise.setEquipment(equipment != null ? equipment : "None");
-            }
-            
-            // Extract difficulty
-            if (exerciseStr.contains("\"difficulty\":")) {
-                String difficulty = extractValue(exerciseStr, "difficulty");
-                exercise.setDifficulty(difficulty != null ? difficulty : "Beginner");
-            }
-            
-            // Extract instructions
-            if (exerciseStr.contains("\"instructions\":")) {
-                String instructions = extractValue(exerciseStr, "instructions");
-                exercise.setInstructions(instructions != null ? instructions : "");
-            }
-            
-            return exercise;
-            
         } catch (Exception e) {
-            logger.error("Error parsing exercise string: {}", exerciseStr, e);
-            return null;
+            logger.warn("Could not save late AI plan for {}: {}", principal.getUsername(), e.getMessage());
         }
     }
     
     /**
-     * Extracts a value from a JSON-like string for a given key.
+     * Retrieves the user's profile and active injuries for exercise plan generation.
+     * 
+     * The data comes from the shared UserContextService cache, which assembles the profile,
+     * equipment access and unrecovered injuries in a single query.
      * 
-     * @param jsonString The JSON-like string to parse
-     * @param key The key to extract the value for
-     * @return The extracted value or null if not found
+     * @param principal The authenticated user
+     * @return The user's context, or null if the user is not found
      */
-    private String extractValue(String jsonString, String key) {
+    private UserContext getUserData(AuthenticatedUser principal) {
         try {
-            String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]*)\"";
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-            java.util.regex.Matcher m = p.matcher(jsonString);
-            
-            if (m.find()) {
-                return m.group(1);
+            UserContext userData = userContextService.get(userIdResolver.resolveUserId(principal));
+            if (userData == null) {
+                logger.warn("No user found for username: {}", principal.getUsername());
             }
+            return userData;
+            
         } catch (Exception e) {
-            logger.warn("Error extracting value for key: {}", key, e);
-        }
-        return null;
-    }
-    
-    /**
-     * Generates a descriptive name for the exercise plan based on user preferences.
-     * 
-     * @param request The exercise plan request containing user preferences
-     * @return A descriptive plan name
-     */
-    private String generatePlanName(ExercisePlanRequest request) {
-        StringBuilder planName = new StringBuilder();
-        
-        // Add focus type
-        if (request.getFocusType() != null && !request.getFocusType().isEmpty()) {
-            planName.append(request.getFocusType()).append(" ");
-        } else {
-            planName.append("General Fitness ");
-        }
-        
-        // Add duration
-        if (request.getDuration() != null && !request.getDuration().isEmpty()) {
-            planName.append(request.getDuration()).append("min ");
-        }
-        
-        // Add targeted areas
-        if (request.getTargetedAreas() != null && !request.getTargetedAreas().isEmpty()) {
-            planName.append("(").append(String.join(", ", request.getTargetedAreas())).append(")");
+            logger.warn("Error fetching user data for {}: {}", principal.getUsername(), e.getMessage());
+            // Return null instead of throwing exception to allow fallback
+            return null;
         }
-        
-        return planName.toString().trim();
     }
-} 
\ No newline at end of file
+}
@@ -3,7 +3,8 @@ package com.appyo.physioapp.backend;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
-import com.appyo.physioapp.auth.JwtUtil;
+import com.appyo.physioapp.auth.AuthenticatedUser;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,11 +20,9 @@ public class ManualExerciseController {
 
     private static final Logger logger = LoggerFactory.getLogger(ManualExerciseController.class);
     private final JdbcTemplate jdbcTemplate;
-    private final JwtUtil jwtUtil;
 
-    public ManualExerciseController(JdbcTemplate jdbcTemplate, JwtUtil jwtUtil) {
+    public ManualExerciseController(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
-        this.jwtUtil = jwtUtil;
     }
 
     /**
@@ -35,26 +34,25 @@ public class ManualExerciseController {
      * - Future date: Creates planned exercise for future execution
      * 
      * @param request Exercise data including date, exercise details, and completion info
-     * @param authHeader JWT authentication token
+     * @param principal Authenticated user resolved from the JWT bearer token
      * @return ResponseEntity with result and next action
      */
     @PostMapping("/add")
     public ResponseEntity<Map<String, Object>> addManualExercise(
             @RequestBody Map<String, Object> request,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser principal) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Validate JWT token
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
+            // Principal is published by JwtAuthenticationFilter when the bearer token is valid
+            if (principal == null) {
                 response.put("success", false);
                 response.put("message", "Invalid authentication token");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.extractUsername(token);
+            String username = principal.getUsername();
             String userId = (String) request.get("userId");
             String exerciseName = (String) request.get("exerciseName");
             String scheduledDateStr = (String) request.get("scheduledDate");
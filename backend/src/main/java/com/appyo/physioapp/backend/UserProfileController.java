@@ -1,15 +1,24 @@
 package com.appyo.physioapp.backend;
 
-import com.appyo.physioapp.auth.JwtUtil;
+import com.appyo.physioapp.auth.AuthenticatedUser;
+import com.appyo.physioapp.auth.CredentialCache;
+import com.appyo.physioapp.auth.RefreshTokenStore;
+import com.appyo.physioapp.auth.TakenIdentifierFilter;
+import com.appyo.physioapp.auth.UserIdResolver;
 import com.appyo.physioapp.auth.UserRepository;
 import com.appyo.physioapp.user.User;
+import com.appyo.physioapp.user.UserContext;
+import com.appyo.physioapp.user.UserContextService;
+import com.appyo.physioapp.user.UserWriteBehindBuffer;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * UserProfileController
@@ -40,11 +49,24 @@ public class UserProfileController {
     
     private static final Logger logger = LoggerFactory.getLogger(UserProfileController.class);
     private final UserRepository userRepository;
-    private final JwtUtil jwtUtil;
+    private final UserIdResolver userIdResolver;
+    private final UserWriteBehindBuffer writeBehind;
+    private final TakenIdentifierFilter takenIdentifiers;
+    private final CredentialCache credentialCache;
+    private final UserContextService userContextService;
+    private final RefreshTokenStore refreshTokens;
     
-    public UserProfileController(UserRepository userRepository, JwtUtil jwtUtil) {
+    public UserProfileController(UserRepository userRepository, UserIdResolver userIdResolver,
+                                 UserWriteBehindBuffer writeBehind, TakenIdentifierFilter takenIdentifiers,
+                                 CredentialCache credentialCache, UserContextService userContextService,
+                                 RefreshTokenStore refreshTokens) {
         this.userRepository = userRepository;
-        this.jwtUtil = jwtUtil;
+        this.userIdResolver = userIdResolver;
+        this.writeBehind = writeBehind;
+        this.takenIdentifiers = takenIdentifiers;
+        this.credentialCache = credentialCache;
+        this.userContextService = userContextService;
+        this.refreshTokens = refreshTokens;
     }
     
     /**
@@ -54,7 +76,7 @@ public class UserProfileController {
      * details, fitness goals, injury history, and equipment access. The data
      * is used to personalize exercise recommendations and track user progress.
      * 
-     * @param authHeader JWT authentication token
+     * @param principal Authenticated user resolved from the JWT bearer token
      * @return ResponseEntity containing user profile data or error details
      * 
      * @apiNote Returns user profile with the following structure:
@@ -79,19 +101,18 @@ public class UserProfileController {
      *          }
      */
     @GetMapping("/profile")
-    public ResponseEntity<Map<String, Object>> getProfile(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<Map<String, Object>> getProfile(@AuthenticationPrincipal AuthenticatedUser principal) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
+            if (principal == null) {
                 response.put("success", false);
                 response.put("message", "Invalid token");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.extractUsername(token);
-            User user = userRepository.findByUsername(username);
+            // Cached per user; includes stepper fields still waiting in the write-behind buffer
+            UserContext user = userContextService.get(userIdResolver.resolveUserId(principal));
             
             if (user == null) {
                 response.put("success", false);
@@ -134,7 +155,7 @@ public class UserProfileController {
      * personal details, fitness goals, and health information. It handles
      * null/empty values safely and validates input data before updating.
      * 
-     * @param authHeader JWT authentication token
+     * @param principal Authenticated user resolved from the JWT bearer token
      * @param updates Map containing field names and new values to update
      * @return ResponseEntity with success status and confirmation message
      * 
@@ -157,20 +178,19 @@ public class UserProfileController {
      */
     @PutMapping("/profile")
     public ResponseEntity<Map<String, Object>> updateProfile(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestBody Map<String, Object> profileData) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
+            if (principal == null) {
                 response.put("success", false);
                 response.put("message", "Invalid token");
                 return ResponseEntity.status(401).body(response);
             }
             
-            String username = jwtUtil.extractUsername(token);
-            User user = userRepository.findByUsername(username);
+            UUID userId = userIdResolver.resolveUserId(principal);
+            User user = userId != null ? userRepository.findByUserId(userId) : null;
             
             if (user == null) {
                 response.put("success", false);
@@ -178,6 +198,9 @@ public class UserProfileController {
                 return ResponseEntity.status(404).body(response);
             }
             
+            // Fold in unflushed stepper fields so the buffer cannot overwrite this save later
+            writeBehind.drainPendingProfile(userId, user);
+            
             // Update user fields - handle null values properly
             if (profileData.containsKey("name")) {
                 user.setName((String) profileData.get("name"));
@@ -224,6 +247,11 @@ public class UserProfileController {
             }
             
             userRepository.save(user);
+            takenIdentifiers.add(null, user.getEmail());
+            credentialCache.invalidate(user.getUsername());
+            userContextService.invalidate(userId);
+            // Access tokens minted on the next refresh carry the new name and email
+            refreshTokens.updateUserDetails(userId, user.getName(), user.getEmail());
             
             response.put("success", true);
             response.put("message", "Profile updated successfully");
@@ -239,22 +267,19 @@ public class UserProfileController {
 
     @PostMapping("/session")
     public Map<String, Object> saveSessionData(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestBody Map<String, Object> sessionData) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String token = authHeader.replace("Bearer ", "");
-            if (!jwtUtil.validateToken(token)) {
+            if (principal == null) {
                 response.put("success", false);
                 response.put("message", "Invalid token");
                 return response;
             }
 
-            String username = jwtUtil.extractUsername(token);
-            User user = userRepository.findByUsername(username);
-            
-            if (user == null) {
+            UUID userId = userIdResolver.resolveUserId(principal);
+            if (userId == null) {
                 response.put("success", false);
                 response.put("message", "User not found");
                 return response;
@@ -267,18 +292,12 @@ public class UserProfileController {
             if (sessionData.containsKey("stepperData")) {
                 Map<String, Object> stepperData = (Map<String, Object>) sessionData.get("stepperData");
                 
-                // Extract and save relevant stepper data to user profile
-                if (stepperData.containsKey("fitnessGoal")) {
-                    user.setFitnessGoal((String) stepperData.get("fitnessGoal"));
-                }
-                if (stepperData.containsKey("equipmentAccess")) {
-                    user.setEquipmentAccess((String) stepperData.get("equipmentAccess"));
-                }
-                if (stepperData.containsKey("injuryHistory")) {
-                    user.setInjuryHistory((String) stepperData.get("injuryHistory"));
-                }
-                
-                userRepository.save(user);
+                // Buffer the stepper columns; they are flushed in a batched partial UPDATE shortly after
+                writeBehind.recordStepperFields(userId,
+                    (String) stepperData.get("fitnessGoal"),
+                    (String) stepperData.get("equipmentAccess"),
+                    (String) stepperData.get("injuryHistory"));
+                userContextService.invalidate(userId);
             }
             
             response.put("success", true);
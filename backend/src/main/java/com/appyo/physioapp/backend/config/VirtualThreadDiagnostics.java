@@ -0,0 +1,109 @@
+package com.appyo.physioapp.backend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * VirtualThreadDiagnostics
+ *
+ * Reports how the opt-in virtual-thread mode (spring.threads.virtual.enabled) is running and
+ * watches for pinning. With the mode on and a Java 21+ runtime, Spring Boot runs Tomcat request
+ * handling, @Scheduled tasks and its task executors on virtual threads, and LlmClient dispatches
+ * provider calls on them too.
+ *
+ * A virtual thread that blocks inside a synchronized block or native frame pins its carrier
+ * thread, which quietly brings back the platform-thread limit. The JDBC path (pgjdbc 42.6+)
+ * and our own caches use java.util.concurrent locks, but OkHttp 4.x still synchronizes around
+ * some connection and HTTP/2 writes. A JFR stream therefore records jdk.VirtualThreadPinned
+ * events longer than app.virtual-threads.pinned-threshold-ms, logs the blocking frames and
+ * counts them in jvm.threads.virtual.pinned.
+ *
+ * @author PhysioApp Team
+ */
+@Component
+public class VirtualThreadDiagnostics {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadDiagnostics.class);
+
+    private static final int LOGGED_FRAMES = 8;
+
+    private final boolean enabled;
+    private final long pinnedThresholdMs;
+    private final Counter pinnedCounter;
+    private RecordingStream pinnedEvents;
+
+    public VirtualThreadDiagnostics(MeterRegistry meterRegistry,
+                                    @Value("${spring.threads.virtual.enabled:false}") boolean enabled,
+                                    @Value("${app.virtual-threads.pinned-threshold-ms:20}") long pinnedThresholdMs) {
+        this.enabled = enabled;
+        this.pinnedThresholdMs = pinnedThresholdMs;
+        this.pinnedCounter = Counter.builder("jvm.threads.virtual.pinned").register(meterRegistry);
+    }
+
+    /**
+     * @return true if virtual threads were requested and the runtime supports them
+     */
+    public static boolean isActive(boolean requested) {
+        return requested && Runtime.version().feature() >= 21;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        int javaVersion = Runtime.version().feature();
+        if (!enabled) {
+            logger.info("Virtual threads disabled; request handling uses the platform thread pool (Java {})", javaVersion);
+            return;
+        }
+        if (!isActive(true)) {
+            logger.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads; "
+                    + "running on platform threads", javaVersion);
+            return;
+        }
+
+        logger.info("Virtual threads enabled for request handling, scheduling and LLM calls (Java {})", javaVersion);
+        try {
+            pinnedEvents = new RecordingStream();
+            pinnedEvents.enable("jdk.VirtualThreadPinned")
+                    .withThreshold(Duration.ofMillis(pinnedThresholdMs))
+                    .withStackTrace();
+            pinnedEvents.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+            pinnedEvents.startAsync();
+        } catch (Exception e) {
+            logger.warn("Could not start virtual-thread pinning diagnostics: {}", e.getMessage());
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        if (logger.isWarnEnabled()) {
+            List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+            String where = frames.stream()
+                    .limit(LOGGED_FRAMES)
+                    .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                            + ":" + frame.getLineNumber())
+                    .collect(Collectors.joining(" <- "));
+            logger.warn("Virtual thread pinned for {} ms: {}", event.getDuration().toMillis(), where);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pinnedEvents != null) {
+            pinnedEvents.close();
+        }
+    }
+}
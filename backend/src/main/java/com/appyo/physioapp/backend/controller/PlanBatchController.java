@@ -0,0 +1,132 @@
+package com.appyo.physioapp.backend.controller;
+
+import com.appyo.physioapp.auth.AuthenticatedUser;
+import com.appyo.physioapp.backend.model.PlanBatchRequest;
+import com.appyo.physioapp.backend.service.PlanBatchJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * PlanBatchController
+ *
+ * Starts batch plan generation for a list of users and reports its progress.
+ * See {@link PlanBatchJobService} for how jobs are budgeted and checkpointed.
+ *
+ * Endpoints:
+ * - POST /api/plans/batch: queue a job, returns 202 with the job ID
+ * - GET /api/plans/batch/{jobId}: status, per-status item counts and the first failures
+ *
+ * Jobs spend LLM tokens and replace users' active generated plans, so both endpoints need a
+ * signed-in user whose role claim is one of plan.batch.allowed-roles (401 without a token,
+ * 403 for other roles).
+ *
+ * @author PhysioApp Team
+ */
+@RestController
+@RequestMapping("/api/plans/batch")
+@CrossOrigin(origins = "*")
+public class PlanBatchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanBatchController.class);
+
+    private final PlanBatchJobService batchJobService;
+    private final Set<String> allowedRoles;
+
+    public PlanBatchController(PlanBatchJobService batchJobService,
+                               @Value("${plan.batch.allowed-roles:ADMIN,CLINIC}") List<String> allowedRoles) {
+        this.batchJobService = batchJobService;
+        this.allowedRoles = allowedRoles.stream()
+                .map(role -> role.trim().toUpperCase(Locale.ROOT))
+                .filter(role -> !role.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submit(@RequestBody PlanBatchRequest request,
+                                                      @AuthenticationPrincipal AuthenticatedUser principal) {
+        ResponseEntity<Map<String, Object>> denied = checkAccess(principal);
+        if (denied != null) {
+            return denied;
+        }
+        Map<String, Object> response = new HashMap<>();
+        try {
+            List<UUID> userIds = new ArrayList<>();
+            if (request.getUserIds() != null) {
+                for (String userId : request.getUserIds()) {
+                    userIds.add(UUID.fromString(userId.trim()));
+                }
+            }
+
+            UUID jobId = batchJobService.submit(userIds, request.getPlan());
+            logger.info("{} queued batch plan job {} for {} users", principal.getUsername(), jobId, userIds.size());
+            response.put("success", true);
+            response.put("jobId", jobId);
+            response.put("statusUrl", "/api/plans/batch/" + jobId);
+            response.put("message", "Batch plan generation queued");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            logger.error("Error queueing batch plan generation", e);
+            response.put("success", false);
+            response.put("message", "Failed to queue batch plan generation");
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getStatus(@PathVariable String jobId,
+                                                         @AuthenticationPrincipal AuthenticatedUser principal) {
+        ResponseEntity<Map<String, Object>> denied = checkAccess(principal);
+        if (denied != null) {
+            return denied;
+        }
+        try {
+            Optional<Map<String, Object>> status = batchJobService.getStatus(UUID.fromString(jobId));
+            if (status.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            Map<String, Object> response = new HashMap<>(status.get());
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid job ID"));
+        } catch (Exception e) {
+            logger.error("Error retrieving batch job {}", jobId, e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("success", false, "message", "Failed to retrieve batch job status"));
+        }
+    }
+
+    // 401/403 response if the caller may not run batch jobs, null if they may
+    private ResponseEntity<Map<String, Object>> checkAccess(AuthenticatedUser principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("success", false, "message", "Invalid authentication token"));
+        }
+        String role = principal.getRole() != null ? principal.getRole().toUpperCase(Locale.ROOT) : "";
+        if (!allowedRoles.contains(role)) {
+            logger.warn("User {} with role '{}' was refused batch plan access", principal.getUsername(), role);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", "Batch plan generation requires a clinic or admin account"));
+        }
+        return null;
+    }
+}
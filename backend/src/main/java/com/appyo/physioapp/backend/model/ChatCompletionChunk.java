@@ -0,0 +1,72 @@
+package com.appyo.physioapp.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * One "data:" event of a streamed chat completion (stream=true).
+ * Each choice carries a delta with the next piece of the assistant message.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChatCompletionChunk {
+    private String id;
+    private String model;
+    private List<Choice> choices;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public List<Choice> getChoices() {
+        return choices;
+    }
+
+    public void setChoices(List<Choice> choices) {
+        this.choices = choices;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Choice {
+        private Integer index;
+        private Message delta;
+        @JsonProperty("finish_reason")
+        private String finishReason;
+
+        public Integer getIndex() {
+            return index;
+        }
+
+        public void setIndex(Integer index) {
+            this.index = index;
+        }
+
+        public Message getDelta() {
+            return delta;
+        }
+
+        public void setDelta(Message delta) {
+            this.delta = delta;
+        }
+
+        public String getFinishReason() {
+            return finishReason;
+        }
+
+        public void setFinishReason(String finishReason) {
+            this.finishReason = finishReason;
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package com.appyo.physioapp.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ChatCompletionRequest {
     private String model;
     private List<Message> messages;
     private double temperature;
     private boolean stream;
+    @JsonProperty("response_format")
+    private ResponseFormat responseFormat;
+    // Upper bound on generated tokens; set by PromptBudget
+    @JsonProperty("max_tokens")
+    private Integer maxTokens;
+    private List<String> stop;
 
     public ChatCompletionRequest(String model, List<Message> messages, double temperature, boolean stream) {
         this.model = model;
@@ -46,4 +55,55 @@ public class ChatCompletionRequest {
     public void setStream(boolean stream) {
         this.stream = stream;
     }
-} 
\ No newline at end of file
+
+    public ResponseFormat getResponseFormat() {
+        return responseFormat;
+    }
+
+    public void setResponseFormat(ResponseFormat responseFormat) {
+        this.responseFormat = responseFormat;
+    }
+
+    public Integer getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(Integer maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public List<String> getStop() {
+        return stop;
+    }
+
+    public void setStop(List<String> stop) {
+        this.stop = stop;
+    }
+
+    /**
+     * Output format; "json_object" makes the model return a single valid JSON object.
+     * The prompt must still mention JSON and describe the expected shape.
+     */
+    public static class ResponseFormat {
+        private String type;
+
+        public ResponseFormat() {
+        }
+
+        public ResponseFormat(String type) {
+            this.type = type;
+        }
+
+        public static ResponseFormat jsonObject() {
+            return new ResponseFormat("json_object");
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+    }
+}
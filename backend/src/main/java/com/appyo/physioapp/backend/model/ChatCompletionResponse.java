@@ -1,6 +1,7 @@
 package com.appyo.physioapp.backend.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -64,6 +65,7 @@ public class ChatCompletionResponse {
     public static class Choice {
         private Integer index;
         private Message message;
+        @JsonProperty("finish_reason")
         private String finishReason;
 
         public Integer getIndex() {
@@ -93,8 +95,11 @@ public class ChatCompletionResponse {
 
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Usage {
+        @JsonProperty("prompt_tokens")
         private Integer promptTokens;
+        @JsonProperty("completion_tokens")
         private Integer completionTokens;
+        @JsonProperty("total_tokens")
         private Integer totalTokens;
 
         public Integer getPromptTokens() {
@@ -0,0 +1,34 @@
+package com.appyo.physioapp.backend.model;
+
+import java.util.List;
+
+/**
+ * PlanBatchRequest
+ *
+ * Request body for POST /api/plans/batch: the users to generate plans for and the plan
+ * parameters shared by all of them. The userId inside plan is ignored.
+ *
+ * @author PhysioApp Team
+ */
+public class PlanBatchRequest {
+    private List<String> userIds;
+    private ExercisePlanRequest plan;
+
+    public PlanBatchRequest() {}
+
+    public List<String> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<String> userIds) {
+        this.userIds = userIds;
+    }
+
+    public ExercisePlanRequest getPlan() {
+        return plan;
+    }
+
+    public void setPlan(ExercisePlanRequest plan) {
+        this.plan = plan;
+    }
+}
@@ -2,11 +2,18 @@ package com.appyo.physioapp.backend.service;
 
 import com.appyo.physioapp.backend.model.ChatCompletionRequest;
 import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.POST;
+import retrofit2.http.Streaming;
 
 public interface DeepseekApiService {
     @POST("chat/completions")
     Call<ChatCompletionResponse> createChatCompletion(@Body ChatCompletionRequest request);
-} 
\ No newline at end of file
+
+    // Request must have stream=true; the body is an SSE stream read incrementally, not buffered
+    @Streaming
+    @POST("chat/completions")
+    Call<ResponseBody> streamChatCompletion(@Body ChatCompletionRequest request);
+}
@@ -0,0 +1,133 @@
+package com.appyo.physioapp.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * ExerciseCatalog
+ *
+ * In-memory snapshot of the "Exercise" table for the local plan generator. The catalog is small
+ * and changes rarely, so it is read in full every plan.catalog.refresh-ms; if a refresh fails the
+ * previous snapshot stays in use. Muscle and equipment lists are split on commas and lower-cased
+ * once here, so plan generation does no string parsing per request.
+ */
+@Component
+public class ExerciseCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExerciseCatalog.class);
+
+    private static final String CATALOG_SQL = """
+        SELECT name, description, target_muscles, secondary_muscles, equipment_required, difficulty_level
+        FROM "Exercise"
+        ORDER BY name
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile List<Entry> entries = List.of();
+
+    public ExerciseCatalog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the current snapshot; empty until the first successful load
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    @Scheduled(fixedDelayString = "${plan.catalog.refresh-ms:1800000}") // Also loads at startup
+    public void refresh() {
+        try {
+            entries = List.copyOf(jdbcTemplate.query(CATALOG_SQL, (rs, rowNum) -> new Entry(
+                    rs.getString("name"),
+                    rs.getString("description"),
+                    terms(rs.getString("target_muscles")),
+                    terms(rs.getString("secondary_muscles")),
+                    terms(rs.getString("equipment_required")),
+                    Difficulty.of(rs.getString("difficulty_level")))));
+            logger.info("Exercise catalog loaded with {} exercises", entries.size());
+        } catch (Exception e) {
+            logger.warn("Could not load exercise catalog, keeping {} cached exercises: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Splits a comma-separated list into trimmed, lower-cased terms.
+     */
+    static Set<String> terms(String list) {
+        if (list == null || list.isBlank()) {
+            return Set.of();
+        }
+        return Arrays.stream(list.split("[,;/]"))
+                .map(term -> term.trim().toLowerCase(Locale.ROOT))
+                .filter(term -> !term.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public enum Difficulty {
+        BEGINNER("Beginner"), INTERMEDIATE("Intermediate"), ADVANCED("Advanced");
+
+        private final String label;
+
+        Difficulty(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        /**
+         * @return the matching level, or BEGINNER for null or unknown values
+         */
+        public static Difficulty of(String value) {
+            if (value == null) {
+                return BEGINNER;
+            }
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "intermediate" -> INTERMEDIATE;
+                case "advanced" -> ADVANCED;
+                default -> BEGINNER;
+            };
+        }
+    }
+
+    /**
+     * One catalog exercise with its lists already split into terms.
+     */
+    public static final class Entry {
+        private final String name;
+        private final String description;
+        private final Set<String> targetMuscles;
+        private final Set<String> secondaryMuscles;
+        private final Set<String> equipment;
+        private final Difficulty difficulty;
+
+        Entry(String name, String description, Set<String> targetMuscles, Set<String> secondaryMuscles,
+              Set<String> equipment, Difficulty difficulty) {
+            this.name = name;
+            this.description = description;
+            this.targetMuscles = targetMuscles;
+            this.secondaryMuscles = secondaryMuscles;
+            this.equipment = equipment;
+            this.difficulty = difficulty;
+        }
+
+        public String getName() { return name; }
+        public String getDescription() { return description; }
+        public Set<String> getTargetMuscles() { return targetMuscles; }
+        public Set<String> getSecondaryMuscles() { return secondaryMuscles; }
+        public Set<String> getEquipment() { return equipment; }
+        public Difficulty getDifficulty() { return difficulty; }
+    }
+}
@@ -0,0 +1,116 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.ExercisePlanRequest;
+import com.appyo.physioapp.backend.model.ExercisePlanResponse;
+import com.appyo.physioapp.cache.BoundedExpiringCache;
+import com.appyo.physioapp.user.UserContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * ExercisePlanCache
+ *
+ * Remembers the exercises the AI generated for a set of plan inputs, so users who ask for the same
+ * kind of session get the plan back without another DeepSeek round trip. Only plans the AI actually
+ * produced are cached, never the built-in fallback exercises.
+ *
+ * The key is a canonical form of everything the prompt is built from: duration, target areas
+ * (lower-cased, sorted, de-duplicated), focus type, and the user's fitness goal, injury history,
+ * equipment and active injuries, with free text lower-cased and reduced to words so spelling of
+ * punctuation and spacing does not split entries. Entries expire after plan.cache.ttl-minutes and
+ * the least recently used are evicted beyond plan.cache.max-size.
+ *
+ * Metrics: cache.gets / cache.evictions / cache.size with cache=exercise-plans for the hit rate,
+ * and plan.cache.bypass for regenerate requests that skipped the cache.
+ */
+@Component
+public class ExercisePlanCache {
+
+    // Bump when the prompt wording changes so old answers are not served for the new prompt
+    private static final String PROMPT_VERSION = "v3";
+
+    private final BoundedExpiringCache<String, List<ExercisePlanResponse.Exercise>> cache;
+    private final Counter bypassCounter;
+
+    public ExercisePlanCache(MeterRegistry meterRegistry,
+                             @Value("${plan.cache.max-size:2000}") int maxSize,
+                             @Value("${plan.cache.ttl-minutes:360}") long ttlMinutes) {
+        this.cache = new BoundedExpiringCache<>(maxSize, ttlMinutes * 60 * 1000);
+        this.cache.registerMetrics(meterRegistry, "exercise-plans");
+        this.bypassCounter = Counter.builder("plan.cache.bypass").register(meterRegistry);
+    }
+
+    /**
+     * @return the cached exercises for this key, or null on a miss
+     */
+    public List<ExercisePlanResponse.Exercise> get(String key) {
+        return cache.get(key);
+    }
+
+    public void put(String key, List<ExercisePlanResponse.Exercise> exercises) {
+        cache.put(key, List.copyOf(exercises));
+    }
+
+    /**
+     * Records a request that asked for a fresh plan; its result still replaces the cached entry.
+     */
+    public void recordBypass() {
+        bypassCounter.increment();
+    }
+
+    /**
+     * Builds the canonical cache key for a plan request and the requesting user's context.
+     *
+     * @param userData the user's context, or null for users without a profile
+     */
+    public static String canonicalKey(ExercisePlanRequest request, UserContext userData) {
+        StringBuilder key = new StringBuilder(PROMPT_VERSION);
+        key.append('|').append(normalize(request.getDuration()));
+        if (request.getTargetedAreas() != null) {
+            key.append('|').append(sortedSet(request.getTargetedAreas().stream()
+                    .filter(Objects::nonNull)
+                    .map(ExercisePlanCache::normalize)));
+        } else {
+            key.append('|');
+        }
+        key.append('|').append(normalize(request.getFocusType()));
+
+        if (userData != null) {
+            key.append('|').append(normalize(userData.getFitnessGoal()));
+            key.append('|').append(normalize(userData.getInjuryHistory()));
+            key.append('|').append(normalize(userData.getEquipmentAccess()));
+            key.append('|').append(sortedSet(userData.getActiveInjuries().stream()
+                    .map(injury -> normalize(injury.getInjuryType()) + ":" + normalize(injury.getMuscleGroupsToAvoid()))));
+        }
+        return key.toString();
+    }
+
+    // Order-independent and de-duplicated, so ["Knees", "back"] and ["back", "knees"] match
+    private static String sortedSet(Stream<String> values) {
+        return String.join(",", values.filter(value -> !value.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new)));
+    }
+
+    // Lower-cases and keeps only the words, so "Knee pain." and "knee  pain" share a bucket
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    @Scheduled(fixedRate = 60000) // Drop expired entries every minute
+    public void purgeExpired() {
+        cache.purgeExpired();
+    }
+}
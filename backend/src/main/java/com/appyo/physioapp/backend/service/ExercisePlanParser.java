@@ -0,0 +1,206 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.Exercise;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ExercisePlanParser
+ *
+ * Turns the model's answer into exercises with Jackson's streaming parser, so escaped quotes,
+ * nested objects and braces inside strings are handled like any other JSON and no regular
+ * expressions are compiled per request.
+ *
+ * Accepted shapes, optionally surrounded by prose or a ```json code fence:
+ * - a bare array of exercise objects (the old prompt format)
+ * - an object with an "exercises" array (what JSON mode returns)
+ *
+ * Each exercise is checked against the schema below; an exercise that fails is dropped and the
+ * rest of the plan is kept. Unknown fields are skipped. If the answer is cut off mid-plan, the
+ * exercises completed before the cut are kept.
+ * - name: required, non-blank, at most 120 characters
+ * - sets: 1..10, number or string ("3", "3-4" takes the lower bound), default 3
+ * - reps: 1..100, number or string ("10-15", "12 each side" take the leading number), default 10
+ * - difficulty: Beginner, Intermediate or Advanced (case-insensitive), default Beginner
+ * - equipment: default "None"; description, instructions and duration: optional text
+ */
+@Component
+public class ExercisePlanParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExercisePlanParser.class);
+
+    private static final int MAX_EXERCISES = 10;
+    private static final int MAX_NAME_LENGTH = 120;
+    // Prose before the JSON may itself contain brackets; give up after this many false starts
+    private static final int MAX_START_ATTEMPTS = 5;
+
+    // Thread-safe and cheap to reuse; parsers are created per call
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * @return the valid exercises in the answer, or an empty list if it contains no usable plan
+     */
+    public List<Exercise> parse(String aiResponse) {
+        if (aiResponse == null || aiResponse.isEmpty()) {
+            return List.of();
+        }
+
+        char[] text = aiResponse.toCharArray();
+        int attempts = 0;
+        for (int start = nextJsonStart(text, 0); start >= 0 && attempts < MAX_START_ATTEMPTS;
+             start = nextJsonStart(text, start + 1), attempts++) {
+            try (JsonParser parser = jsonFactory.createParser(text, start, text.length - start)) {
+                List<Exercise> exercises = readPlan(parser);
+                if (exercises != null && !exercises.isEmpty()) {
+                    logger.debug("Successfully parsed {} exercises from AI response", exercises.size());
+                    return exercises;
+                }
+            } catch (JsonProcessingException e) {
+                logger.debug("No plan JSON at offset {}: {}", start, e.getOriginalMessage());
+            } catch (IOException e) {
+                logger.warn("Error reading AI response: {}", e.getMessage());
+                return List.of();
+            }
+        }
+        logger.warn("No valid exercise JSON found in AI response");
+        return List.of();
+    }
+
+    /**
+     * @return the exercises if the value at the parser's position is a plan, or null if it is some other JSON
+     */
+    private List<Exercise> readPlan(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return readExercises(parser);
+        }
+        if (token != JsonToken.START_OBJECT) {
+            return null;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("exercises".equals(field) && value == JsonToken.START_ARRAY) {
+                return readExercises(parser);
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    private List<Exercise> readExercises(JsonParser parser) throws IOException {
+        List<Exercise> exercises = new ArrayList<>();
+        try {
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                Exercise exercise = readExercise(parser);
+                if (exercise != null && exercises.size() < MAX_EXERCISES) {
+                    exercises.add(exercise);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            if (exercises.isEmpty()) {
+                throw e;
+            }
+            // Usually an answer cut off by the token limit; keep the exercises that were complete
+            logger.warn("AI response ended mid-plan, keeping {} complete exercises: {}",
+                    exercises.size(), e.getOriginalMessage());
+        }
+        return exercises;
+    }
+
+    /**
+     * Reads one exercise object; the parser is left on its END_OBJECT.
+     *
+     * @return the exercise, or null if it does not satisfy the schema
+     */
+    private Exercise readExercise(JsonParser parser) throws IOException {
+        Exercise exercise = new Exercise();
+        exercise.setSets(3);
+        exercise.setReps(10);
+        exercise.setEquipment("None");
+        exercise.setDifficulty("Beginner");
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            String text = value == JsonToken.VALUE_NULL ? null : parser.getText().trim();
+            if (text == null || text.isEmpty()) {
+                continue;
+            }
+            switch (field) {
+                case "name" -> exercise.setName(text);
+                case "description" -> exercise.setDescription(text);
+                case "instructions" -> exercise.setInstructions(text);
+                case "duration" -> exercise.setDuration(text);
+                case "equipment" -> exercise.setEquipment(text);
+                case "difficulty" -> exercise.setDifficulty(difficulty(text));
+                case "sets" -> exercise.setSets(boundedNumber(text, 1, 10, 3));
+                case "reps" -> exercise.setReps(boundedNumber(text, 1, 100, 10));
+                default -> { } // Unknown fields are ignored
+            }
+        }
+
+        String name = exercise.getName();
+        if (name == null || name.isBlank() || name.length() > MAX_NAME_LENGTH) {
+            logger.debug("Dropping exercise without a valid name");
+            return null;
+        }
+        return exercise;
+    }
+
+    // Index of the next '[' or '{' at or after from, or -1
+    private static int nextJsonStart(char[] text, int from) {
+        for (int i = from; i < text.length; i++) {
+            if (text[i] == '[' || text[i] == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The leading whole number of the text ("10-15" -> 10), clamped to the range, or the default
+    private static int boundedNumber(String text, int min, int max, int defaultValue) {
+        int i = 0;
+        while (i < text.length() && !Character.isDigit(text.charAt(i))) {
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (i < text.length() && Character.isDigit(text.charAt(i)) && digits < 6) {
+            value = value * 10 + (text.charAt(i) - '0');
+            i++;
+            digits++;
+        }
+        if (digits == 0) {
+            return defaultValue;
+        }
+        return (int) Math.max(min, Math.min(max, value));
+    }
+
+    private static String difficulty(String text) {
+        return switch (text.toLowerCase(Locale.ROOT)) {
+            case "intermediate" -> "Intermediate";
+            case "advanced" -> "Advanced";
+            default -> "Beginner";
+        };
+    }
+}
@@ -0,0 +1,229 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import com.appyo.physioapp.backend.model.Exercise;
+import com.appyo.physioapp.backend.model.ExercisePlanRequest;
+import com.appyo.physioapp.backend.model.ExercisePlanResponse;
+import com.appyo.physioapp.backend.model.Message;
+import com.appyo.physioapp.backend.model.Role;
+import com.appyo.physioapp.llm.LlmConcurrencyLimiter;
+import com.appyo.physioapp.llm.LlmMetrics;
+import com.appyo.physioapp.llm.LlmRouter;
+import com.appyo.physioapp.llm.PromptBudget;
+import com.appyo.physioapp.llm.SingleFlightRegistry;
+import com.appyo.physioapp.user.UserContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ExercisePlanService
+ *
+ * Builds the plan prompt, asks the LLM for a plan and turns the answer into exercises. Shared by
+ * the plan endpoint and background pre-generation, so both produce the same plan for the same
+ * inputs and share one in-flight call through the single-flight registry.
+ *
+ * Plans the AI produced are stored in the {@link ExercisePlanCache}; what to do when the AI is
+ * slow, busy or fails is left to the caller.
+ *
+ * @author PhysioApp Team
+ */
+@Service
+public class ExercisePlanService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExercisePlanService.class);
+    
+    private final LlmRouter llmRouter;
+    private final LlmConcurrencyLimiter concurrencyLimiter;
+    private final SingleFlightRegistry singleFlight;
+    private final ExercisePlanParser planParser;
+    private final ExercisePlanCache planCache;
+    private final LlmMetrics llmMetrics;
+    private final PromptBudget promptBudget;
+    
+    public ExercisePlanService(LlmRouter llmRouter, LlmConcurrencyLimiter concurrencyLimiter,
+                               SingleFlightRegistry singleFlight, ExercisePlanParser planParser,
+                               ExercisePlanCache planCache, LlmMetrics llmMetrics, PromptBudget promptBudget) {
+        this.llmRouter = llmRouter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.singleFlight = singleFlight;
+        this.planParser = planParser;
+        this.planCache = planCache;
+        this.llmMetrics = llmMetrics;
+        this.promptBudget = promptBudget;
+    }
+    
+    /**
+     * Asks the AI for a plan without blocking. Identical plan requests already in flight share
+     * one call, and only its leader takes a permit from the given concurrency endpoint.
+     * 
+     * @param userData User profile and active injuries (can be null for new users)
+     * @param cacheKey Canonical key of the inputs, from {@link ExercisePlanCache#canonicalKey}
+     * @param endpoint Concurrency limit and token budget ({@link PromptBudget}) to charge the call to
+     * @return Future of the parsed exercises (empty if the answer held no usable plan); fails if
+     *         the LLM call failed, the endpoint was at its limit or the prompt was over its token
+     *         budget. Cancelling it leaves the
+     *         shared call, which stops once no other caller is waiting
+     */
+    public CompletableFuture<List<ExercisePlanResponse.Exercise>> generateWithAi(ExercisePlanRequest request,
+                                                                               UserContext userData,
+                                                                               String cacheKey, String endpoint) {
+        // Build comprehensive prompt combining database and session data
+        String prompt = buildPrompt(userData, request);
+        logger.debug("Generated plan prompt: {}", prompt);
+        
+        ChatCompletionRequest chatRequest = new ChatCompletionRequest("deepseek-chat",
+                List.of(new Message(Role.USER, prompt)), 0.7, false);
+        chatRequest.setResponseFormat(ChatCompletionRequest.ResponseFormat.jsonObject());
+        try {
+            promptBudget.apply(endpoint, chatRequest);
+        } catch (PromptBudget.PromptTooLargeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        CompletableFuture<ChatCompletionResponse> waiter = singleFlight.join("plan|" + cacheKey,
+                () -> concurrencyLimiter.withPermit(endpoint,
+                        () -> llmMetrics.timed(endpoint, chatRequest, () -> llmRouter.complete(chatRequest))));
+        CompletableFuture<List<ExercisePlanResponse.Exercise>> plan = waiter.thenApply(apiResponse -> {
+            if (apiResponse.getChoices() != null && !apiResponse.getChoices().isEmpty()) {
+                promptBudget.recordFinish(endpoint, apiResponse.getChoices().get(0).getFinishReason());
+            }
+            List<ExercisePlanResponse.Exercise> exercises = aiExercises(apiResponse);
+            llmMetrics.recordPlanParse(endpoint, !exercises.isEmpty());
+            if (!exercises.isEmpty()) {
+                planCache.put(cacheKey, exercises);
+            }
+            return exercises;
+        });
+        // Cancelling the plan only detaches this caller from the shared call
+        plan.whenComplete((exercises, error) -> {
+            if (plan.isCancelled()) {
+                waiter.cancel(true);
+            }
+        });
+        return plan;
+    }
+    
+    /**
+     * Extracts the exercises from the AI answer.
+     * 
+     * @param apiResponse The completion returned by the LLM
+     * @return The parsed exercises, or an empty list if the answer held no usable plan
+     */
+    private List<ExercisePlanResponse.Exercise> aiExercises(ChatCompletionResponse apiResponse) {
+        if (apiResponse.getChoices() == null || apiResponse.getChoices().isEmpty()) {
+            return List.of();
+        }
+        String aiResponse = apiResponse.getChoices().get(0).getMessage().getContent();
+        logger.debug("AI Response received: {}", aiResponse);
+        
+        // Convert Exercise objects to ExercisePlanResponse.Exercise objects
+        List<ExercisePlanResponse.Exercise> responseExercises = new ArrayList<>();
+        for (Exercise exercise : planParser.parse(aiResponse)) {
+            ExercisePlanResponse.Exercise responseExercise = new ExercisePlanResponse.Exercise();
+            responseExercise.setName(exercise.getName());
+            responseExercise.setDescription(exercise.getDescription());
+            responseExercise.setSets(String.valueOf(exercise.getSets()));
+            responseExercise.setReps(String.valueOf(exercise.getReps()));
+            responseExercise.setEquipment(exercise.getEquipment());
+            responseExercise.setDifficulty(exercise.getDifficulty());
+            responseExercise.setInstructions(exercise.getInstructions());
+            responseExercises.add(responseExercise);
+        }
+        return responseExercises;
+    }
+    
+    /**
+     * Wraps the exercises in a plan; name, duration and areas come from the request.
+     */
+    public ExercisePlanResponse toPlan(List<ExercisePlanResponse.Exercise> exercises, ExercisePlanRequest request) {
+        ExercisePlanResponse planResponse = new ExercisePlanResponse();
+        planResponse.setExercises(exercises);
+        planResponse.setPlanName(generatePlanName(request));
+        planResponse.setDuration(request.getDuration());
+        planResponse.setTargetedAreas(request.getTargetedAreas() != null ? String.join(", ", request.getTargetedAreas()) : "");
+        return planResponse;
+    }
+    
+    /**
+     * Builds a comprehensive prompt for AI exercise plan generation.
+     * 
+     * This method combines user profile data from the database with current session
+     * preferences to create a detailed prompt that guides the AI in generating
+     * personalized exercise recommendations.
+     * 
+     * @param userData User profile and active injuries (can be null for new users)
+     * @param request Current session preferences and requirements
+     * @return Formatted prompt string for AI processing
+     */
+    private String buildPrompt(UserContext userData, ExercisePlanRequest request) {
+        StringBuilder prompt = new StringBuilder();
+        
+        prompt.append("Create a ").append(request.getDuration()).append("-minute exercise plan focusing on ");
+        prompt.append(String.join(", ", request.getTargetedAreas()));
+        
+        if (request.getFocusType() != null && !request.getFocusType().isEmpty()) {
+            prompt.append(" with ").append(request.getFocusType()).append(" focus");
+        }
+        
+        prompt.append(". ");
+        
+        if (userData != null) {
+            if (userData.getFitnessGoal() != null && !userData.getFitnessGoal().isEmpty()) {
+                prompt.append("User's fitness goal: ").append(userData.getFitnessGoal()).append(". ");
+            }
+            if (userData.getInjuryHistory() != null && !userData.getInjuryHistory().isEmpty()) {
+                prompt.append("Injury history: ").append(userData.getInjuryHistory()).append(". ");
+            }
+            if (userData.getEquipmentAccess() != null && !userData.getEquipmentAccess().isEmpty()) {
+                prompt.append("Available equipment: ").append(userData.getEquipmentAccess()).append(". ");
+            }
+            for (UserContext.Injury injury : userData.getActiveInjuries()) {
+                if (injury.getMuscleGroupsToAvoid() != null && !injury.getMuscleGroupsToAvoid().isEmpty()) {
+                    prompt.append("Avoid loading ").append(injury.getMuscleGroupsToAvoid())
+                          .append(" (").append(injury.getInjuryType() != null ? injury.getInjuryType() : "injury").append("). ");
+                }
+            }
+        }
+        
+        prompt.append("Provide 3-5 exercises as a JSON object with the following structure: ");
+        prompt.append("{\"exercises\": [{\"name\": \"Exercise Name\", \"description\": \"Brief description\", \"sets\": 3, \"reps\": 12, \"equipment\": \"None/Dumbbells/etc.\", \"difficulty\": \"Beginner/Intermediate/Advanced\", \"instructions\": \"At most 3 short steps\"}]}");
+        prompt.append(" Keep each description to one sentence and the instructions under 40 words.");
+        
+        return prompt.toString();
+    }
+    
+    /**
+     * Generates a descriptive name for the exercise plan based on user preferences.
+     * 
+     * @param request The exercise plan request containing user preferences
+     * @return A descriptive plan name
+     */
+    public String generatePlanName(ExercisePlanRequest request) {
+        StringBuilder planName = new StringBuilder();
+        
+        // Add focus type
+        if (request.getFocusType() != null && !request.getFocusType().isEmpty()) {
+            planName.append(request.getFocusType()).append(" ");
+        } else {
+            planName.append("General Fitness ");
+        }
+        
+        // Add duration
+        if (request.getDuration() != null && !request.getDuration().isEmpty()) {
+            planName.append(request.getDuration()).append("min ");
+        }
+        
+        // Add targeted areas
+        if (request.getTargetedAreas() != null && !request.getTargetedAreas().isEmpty()) {
+            planName.append("(").append(String.join(", ", request.getTargetedAreas())).append(")");
+        }
+        
+        return planName.toString().trim();
+    }
+}
@@ -0,0 +1,245 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.ExercisePlanRequest;
+import com.appyo.physioapp.backend.model.ExercisePlanResponse;
+import com.appyo.physioapp.backend.service.ExerciseCatalog.Difficulty;
+import com.appyo.physioapp.user.UserContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LocalPlanGenerator
+ *
+ * Rules-based exercise plans from the {@link ExerciseCatalog}, used when the LLM is unavailable,
+ * too slow for the request's deadline, or returns nothing usable. It runs in microseconds and
+ * never calls out of the process.
+ *
+ * Selection:
+ * - Exercises whose target or secondary muscles touch an active injury's muscle groups to avoid
+ *   (or its injured area, or an excluded area of the request) are never chosen.
+ * - Exercises above the requested difficulty are skipped; users with an active injury are capped
+ *   at Intermediate.
+ * - Equipment must be covered by the user's equipment access and the request: "Full Gym" allows
+ *   everything, bodyweight exercises are always allowed.
+ * - The rest are ranked by how well their target muscles (2 points) and secondary muscles
+ *   (1 point) match the targeted areas; body regions such as "upper body" expand to muscles.
+ * - One exercise per ~8 minutes of session, between 3 and 6.
+ *
+ * When the catalog is empty or nothing passes the filters, a basic bodyweight plan is returned
+ * instead, with the same muscles to avoid left out; it always ends with a breathing exercise so the
+ * user gets a plan whatever their injuries.
+ */
+@Component
+public class LocalPlanGenerator {
+
+    private static final int MIN_EXERCISES = 3;
+    private static final int MAX_EXERCISES = 6;
+    private static final int MINUTES_PER_EXERCISE = 8;
+
+    // Body regions offered by the planner, expanded to the muscle names used in the catalog
+    private static final Map<String, Set<String>> REGIONS = Map.of(
+            "upper body", Set.of("chest", "shoulders", "back", "triceps", "biceps", "upper back"),
+            "lower body", Set.of("quadriceps", "glutes", "hamstrings", "calves", "hips"),
+            "legs", Set.of("quadriceps", "glutes", "hamstrings", "calves"),
+            "arms", Set.of("biceps", "triceps", "forearms"),
+            "core", Set.of("core", "abs", "obliques", "lower back"),
+            "abs", Set.of("core", "abs", "obliques"),
+            "knee", Set.of("quadriceps", "hamstrings", "knee"),
+            "shoulder", Set.of("shoulders", "rotator cuff", "shoulder"));
+
+    // Equipment implied by the planner's equipment choices
+    private static final Map<String, Set<String>> EQUIPMENT_KITS = Map.of(
+            "home equipment", Set.of("dumbbells", "dumbbell", "resistance band", "resistance bands", "mat", "bench", "chair"),
+            "minimal equipment", Set.of("resistance band", "resistance bands", "mat", "chair"));
+
+    private static final Set<String> NO_EQUIPMENT = Set.of("none", "bodyweight", "body weight", "mat");
+
+    private final ExerciseCatalog catalog;
+
+    public LocalPlanGenerator(ExerciseCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * @param userData the user's context, or null for users without a profile
+     * @return between 1 and 6 exercises; never empty
+     */
+    public List<ExercisePlanResponse.Exercise> generate(ExercisePlanRequest request, UserContext userData) {
+        Set<String> wanted = new HashSet<>();
+        if (request.getTargetedAreas() != null) {
+            for (String area : request.getTargetedAreas()) {
+                addArea(wanted, area);
+            }
+        }
+
+        Set<String> avoid = new HashSet<>();
+        if (request.getExcludedAreas() != null) {
+            for (String area : request.getExcludedAreas()) {
+                addArea(avoid, area);
+            }
+        }
+        boolean injured = false;
+        if (userData != null) {
+            for (UserContext.Injury injury : userData.getActiveInjuries()) {
+                injured = true;
+                avoid.addAll(ExerciseCatalog.terms(injury.getMuscleGroupsToAvoid()));
+                if (injury.getInjuryArea() != null) {
+                    addArea(avoid, injury.getInjuryArea());
+                }
+            }
+        }
+
+        Difficulty maxDifficulty = request.getDifficulty() != null
+                ? Difficulty.of(request.getDifficulty())
+                : Difficulty.INTERMEDIATE;
+        if (injured && maxDifficulty == Difficulty.ADVANCED) {
+            maxDifficulty = Difficulty.INTERMEDIATE;
+        }
+
+        Set<String> equipment = availableEquipment(request, userData);
+        boolean fullGym = equipment.contains("full gym");
+
+        List<ExerciseCatalog.Entry> candidates = new ArrayList<>();
+        for (ExerciseCatalog.Entry entry : catalog.entries()) {
+            if (entry.getDifficulty().compareTo(maxDifficulty) > 0
+                    || overlaps(entry.getTargetMuscles(), avoid)
+                    || overlaps(entry.getSecondaryMuscles(), avoid)
+                    || !(fullGym || hasEquipment(entry, equipment))) {
+                continue;
+            }
+            candidates.add(entry);
+        }
+        if (candidates.isEmpty()) {
+            return basicPlan(avoid);
+        }
+
+        candidates.sort(Comparator.comparingInt((ExerciseCatalog.Entry entry) -> -score(entry, wanted))
+                .thenComparing(ExerciseCatalog.Entry::getName));
+
+        int count = Math.max(MIN_EXERCISES, Math.min(MAX_EXERCISES, durationMinutes(request) / MINUTES_PER_EXERCISE));
+        List<ExercisePlanResponse.Exercise> plan = new ArrayList<>();
+        for (ExerciseCatalog.Entry entry : candidates.subList(0, Math.min(count, candidates.size()))) {
+            plan.add(toExercise(entry, injured));
+        }
+        return plan;
+    }
+
+    private static void addArea(Set<String> terms, String area) {
+        String normalized = area.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty() || normalized.equals("none")) {
+            return;
+        }
+        terms.add(normalized);
+        terms.addAll(REGIONS.getOrDefault(normalized, Set.of()));
+    }
+
+    private static Set<String> availableEquipment(ExercisePlanRequest request, UserContext userData) {
+        Set<String> equipment = new HashSet<>();
+        for (String access : new String[]{
+                userData != null ? userData.getEquipmentAccess() : null, request.getEquipment()}) {
+            for (String term : ExerciseCatalog.terms(access)) {
+                equipment.add(term);
+                equipment.addAll(EQUIPMENT_KITS.getOrDefault(term, Set.of()));
+            }
+        }
+        return equipment;
+    }
+
+    private static boolean hasEquipment(ExerciseCatalog.Entry entry, Set<String> available) {
+        for (String item : entry.getEquipment()) {
+            if (!NO_EQUIPMENT.contains(item) && !available.contains(item)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // True if any term of one set contains a term of the other ("lower back" vs "back")
+    private static boolean overlaps(Set<String> muscles, Set<String> terms) {
+        for (String muscle : muscles) {
+            for (String term : terms) {
+                if (muscle.contains(term) || term.contains(muscle)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int score(ExerciseCatalog.Entry entry, Set<String> wanted) {
+        int score = 0;
+        for (String muscle : entry.getTargetMuscles()) {
+            if (wanted.contains(muscle)) score += 2;
+        }
+        for (String muscle : entry.getSecondaryMuscles()) {
+            if (wanted.contains(muscle)) score += 1;
+        }
+        return score;
+    }
+
+    // Leading number of "30", "30-45 minutes" or "60+ minutes"; 30 when absent
+    private static int durationMinutes(ExercisePlanRequest request) {
+        String duration = request.getDuration();
+        int minutes = 0;
+        for (int i = 0; duration != null && i < duration.length() && Character.isDigit(duration.charAt(i)) && i < 4; i++) {
+            minutes = minutes * 10 + (duration.charAt(i) - '0');
+        }
+        return minutes > 0 ? minutes : 30;
+    }
+
+    private static ExercisePlanResponse.Exercise toExercise(ExerciseCatalog.Entry entry, boolean injured) {
+        // Conservative volume: rehab users and beginners get fewer sets
+        boolean easy = injured || entry.getDifficulty() == Difficulty.BEGINNER;
+        ExercisePlanResponse.Exercise exercise = new ExercisePlanResponse.Exercise();
+        exercise.setName(entry.getName());
+        exercise.setDescription(entry.getDescription());
+        exercise.setSets(easy ? "2" : "3");
+        exercise.setReps(entry.getDifficulty() == Difficulty.ADVANCED ? "8" : "12");
+        exercise.setEquipment(entry.getEquipment().isEmpty() ? "None" : String.join(", ", entry.getEquipment()));
+        exercise.setDifficulty(entry.getDifficulty().label());
+        exercise.setInstructions(entry.getDescription() != null ? entry.getDescription()
+                : "Move slowly with control and stop if you feel pain.");
+        return exercise;
+    }
+
+    // Bodyweight fallback; each exercise is left out if it loads a muscle or area to avoid
+    private static List<ExercisePlanResponse.Exercise> basicPlan(Set<String> avoid) {
+        List<ExercisePlanResponse.Exercise> plan = new ArrayList<>();
+        if (!overlaps(Set.of("chest", "triceps", "shoulders"), avoid)) {
+            plan.add(basic("Push-ups", "Basic upper body exercise", "3", "10",
+                    "1. Start in plank position\n2. Lower your body\n3. Push back up"));
+        }
+        if (!overlaps(Set.of("quadriceps", "glutes", "hamstrings", "knee"), avoid)) {
+            plan.add(basic("Squats", "Basic lower body exercise", "3", "15",
+                    "1. Stand with feet shoulder-width apart\n2. Lower your body\n3. Stand back up"));
+        }
+        if (!overlaps(Set.of("calves", "hips"), avoid)) {
+            plan.add(basic("Easy walk", "Gentle walking at a comfortable pace", "1", "10 minutes",
+                    "1. Walk on flat ground\n2. Keep a pace at which you can talk\n3. Stop if you feel pain"));
+        }
+        // Loads no joint, so it is safe with any injury and keeps the plan non-empty
+        plan.add(basic("Diaphragmatic breathing", "Relaxed breathing to finish the session", "2", "10 breaths",
+                "1. Lie on your back with knees bent\n2. Breathe in slowly through your nose\n3. Breathe out through pursed lips"));
+        return plan;
+    }
+
+    private static ExercisePlanResponse.Exercise basic(String name, String description, String sets, String reps,
+                                                       String instructions) {
+        ExercisePlanResponse.Exercise exercise = new ExercisePlanResponse.Exercise();
+        exercise.setName(name);
+        exercise.setDescription(description);
+        exercise.setSets(sets);
+        exercise.setReps(reps);
+        exercise.setEquipment("None");
+        exercise.setDifficulty("Beginner");
+        exercise.setInstructions(instructions);
+        return exercise;
+    }
+}
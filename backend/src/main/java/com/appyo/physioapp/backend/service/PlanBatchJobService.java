@@ -0,0 +1,522 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.ExercisePlanRequest;
+import com.appyo.physioapp.backend.model.ExercisePlanResponse;
+import com.appyo.physioapp.jdbc.BatchWrites;
+import com.appyo.physioapp.llm.LlmConcurrencyLimiter;
+import com.appyo.physioapp.llm.TokenRateLimiter;
+import com.appyo.physioapp.user.UserContext;
+import com.appyo.physioapp.user.UserContextService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * PlanBatchJobService
+ *
+ * Generates exercise plans for many users at once (clinic onboarding) without one HTTP request
+ * per user. A job is a list of user IDs plus the plan parameters they share; it is stored in
+ * plan_batch_job with one plan_batch_item row per user and worked through in the background.
+ *
+ * Budgets, shared by all jobs:
+ * - at most llm.concurrency.batch.max-in-flight LLM calls at once; the job waits for a free slot
+ *   instead of being rejected
+ * - plan.batch.tokens-per-minute, charged plan.batch.estimated-tokens-per-plan before each call
+ *
+ * Results are written to generated_plans in batches (plan.batch.write-batch-size, or every
+ * plan.batch.flush-interval-ms). The same transaction marks the items done or failed, so the
+ * items table is the checkpoint: after a restart, unfinished jobs resume with their pending users
+ * and no user gets a second plan. A user whose plan is already in the plan cache costs no LLM call.
+ * A failed call is retried up to plan.batch.max-attempts times before the item is marked failed.
+ *
+ * A result the database rejects (e.g. the user was deleted) is checkpointed as failed on its own,
+ * see {@link BatchWrites}. While the database is unreachable results are retried, at most
+ * MAX_WRITE_ATTEMPTS flushes each; after that they are dropped from memory and their items stay
+ * pending, so the job finishes them when it resumes after the next start.
+ *
+ * Jobs run one at a time in submission order.
+ *
+ * Metrics:
+ * - plan.batch.items (counter, tag outcome=generated|cached|failed)
+ * - plan.batch.in_flight (gauge): batch LLM calls running
+ * - plan.batch.write_queue (gauge): finished items waiting to be written
+ * - plan.batch.tokens_available (gauge): tokens left in the per-minute budget
+ *
+ * @author PhysioApp Team
+ */
+@Service
+public class PlanBatchJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanBatchJobService.class);
+
+    // Concurrency limit the batch LLM calls are charged to
+    private static final String ENDPOINT = "batch";
+    private static final int MAX_REPORTED_FAILURES = 50;
+    private static final int MAX_WRITE_ATTEMPTS = 10;
+
+    private static final String INSERT_JOB_SQL =
+        "INSERT INTO plan_batch_job (job_id, status, plan_request, total) VALUES (?, 'queued', ?, ?)";
+    private static final String INSERT_ITEM_SQL =
+        "INSERT INTO plan_batch_item (job_id, user_id, status) VALUES (?, ?, 'pending')";
+    private static final String SELECT_UNFINISHED_JOBS_SQL =
+        "SELECT job_id FROM plan_batch_job WHERE status IN ('queued', 'running') ORDER BY created_at";
+    private static final String SELECT_JOB_REQUEST_SQL =
+        "SELECT plan_request FROM plan_batch_job WHERE job_id = ?";
+    private static final String SELECT_PENDING_ITEMS_SQL =
+        "SELECT user_id FROM plan_batch_item WHERE job_id = ? AND status = 'pending'";
+    private static final String MARK_JOB_RUNNING_SQL =
+        "UPDATE plan_batch_job SET status = 'running', updated_at = now() WHERE job_id = ?";
+    private static final String MARK_JOB_COMPLETED_SQL = """
+        UPDATE plan_batch_job SET status = 'completed', updated_at = now(), finished_at = now()
+        WHERE job_id = ?
+          AND NOT EXISTS (SELECT 1 FROM plan_batch_item WHERE job_id = ? AND status = 'pending')
+        """;
+    private static final String TOUCH_JOB_SQL =
+        "UPDATE plan_batch_job SET updated_at = now() WHERE job_id = ?";
+    private static final String DEACTIVATE_PLANS_SQL =
+        "UPDATE generated_plans SET is_active = false WHERE user_id = ? AND is_active = true";
+    private static final String INSERT_PLAN_SQL = """
+        INSERT INTO generated_plans (user_id, plan_data, created_at, expires_at, is_active, is_used)
+        VALUES (?, ?, ?, ?, true, false)
+        """;
+    private static final String UPDATE_ITEM_SQL = """
+        UPDATE plan_batch_item SET status = ?, attempts = ?, error = ?, updated_at = now()
+        WHERE job_id = ? AND user_id = ?
+        """;
+    private static final String SELECT_JOB_SQL =
+        "SELECT status, total, created_at, updated_at, finished_at FROM plan_batch_job WHERE job_id = ?";
+    private static final String COUNT_ITEMS_SQL =
+        "SELECT status, COUNT(*) AS items FROM plan_batch_item WHERE job_id = ? GROUP BY status";
+    private static final String SELECT_FAILURES_SQL =
+        "SELECT user_id, error FROM plan_batch_item WHERE job_id = ? AND status = 'failed' ORDER BY user_id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExercisePlanService planService;
+    private final ExercisePlanCache planCache;
+    private final UserContextService userContextService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final TokenRateLimiter tokenBudget;
+    private final Semaphore concurrency;
+    private final int estimatedTokensPerPlan;
+    private final int maxAttempts;
+    private final int maxUsers;
+    private final int writeBatchSize;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "plan-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Finished items not yet written to the database
+    private final ConcurrentLinkedQueue<ItemResult> results = new ConcurrentLinkedQueue<>();
+    // Not synchronized: flush runs JDBC and a virtual thread blocked inside a monitor would pin its carrier
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile boolean shuttingDown;
+
+    public PlanBatchJobService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                               ExercisePlanService planService, ExercisePlanCache planCache,
+                               UserContextService userContextService, ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${llm.concurrency.batch.max-in-flight:4}") int maxConcurrency,
+                               @Value("${plan.batch.tokens-per-minute:60000}") long tokensPerMinute,
+                               @Value("${plan.batch.estimated-tokens-per-plan:2000}") int estimatedTokensPerPlan,
+                               @Value("${plan.batch.max-attempts:2}") int maxAttempts,
+                               @Value("${plan.batch.max-users:5000}") int maxUsers,
+                               @Value("${plan.batch.write-batch-size:50}") int writeBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.planService = planService;
+        this.planCache = planCache;
+        this.userContextService = userContextService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.tokenBudget = new TokenRateLimiter(tokensPerMinute);
+        this.concurrency = new Semaphore(Math.max(1, maxConcurrency));
+        this.estimatedTokensPerPlan = estimatedTokensPerPlan;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.maxUsers = maxUsers;
+        this.writeBatchSize = Math.max(1, writeBatchSize);
+
+        int permits = Math.max(1, maxConcurrency);
+        Gauge.builder("plan.batch.in_flight", concurrency, c -> permits - c.availablePermits()).register(meterRegistry);
+        Gauge.builder("plan.batch.write_queue", results, ConcurrentLinkedQueue::size).register(meterRegistry);
+        Gauge.builder("plan.batch.tokens_available", tokenBudget, TokenRateLimiter::available).register(meterRegistry);
+    }
+
+    /**
+     * Stores a new job and queues it behind any running job.
+     *
+     * @param userIds users to generate a plan for; duplicates are ignored
+     * @param plan plan parameters shared by every user (its userId is ignored)
+     * @return the job ID for {@link #getStatus(UUID)}
+     * @throws IllegalArgumentException if there are no users, too many users, or no plan parameters
+     */
+    public UUID submit(List<UUID> userIds, ExercisePlanRequest plan) {
+        Set<UUID> users = new LinkedHashSet<>(userIds != null ? userIds : List.of());
+        if (users.isEmpty()) {
+            throw new IllegalArgumentException("At least one user ID is required");
+        }
+        if (users.size() > maxUsers) {
+            throw new IllegalArgumentException("A batch job can have at most " + maxUsers + " users");
+        }
+        if (plan == null) {
+            throw new IllegalArgumentException("Plan parameters are required");
+        }
+
+        plan.setUserId(null);
+        String planJson;
+        try {
+            planJson = objectMapper.writeValueAsString(plan);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid plan parameters", e);
+        }
+
+        UUID jobId = UUID.randomUUID();
+        List<Object[]> itemArgs = new ArrayList<>();
+        for (UUID userId : users) {
+            itemArgs.add(new Object[]{jobId, userId});
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(INSERT_JOB_SQL, jobId, planJson, users.size());
+            jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, itemArgs);
+        });
+
+        logger.info("Queued plan batch job {} for {} users", jobId, users.size());
+        runner.execute(() -> runJob(jobId));
+        return jobId;
+    }
+
+    /**
+     * @return the job's status and progress, or empty if there is no such job
+     */
+    public Optional<Map<String, Object>> getStatus(UUID jobId) {
+        List<Map<String, Object>> jobs = jdbcTemplate.queryForList(SELECT_JOB_SQL, jobId);
+        if (jobs.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, Object> job = jobs.get(0);
+
+        Map<String, Long> counts = new HashMap<>();
+        jdbcTemplate.query(COUNT_ITEMS_SQL, rs -> {
+            counts.put(rs.getString("status"), rs.getLong("items"));
+        }, jobId);
+        long total = ((Number) job.get("total")).longValue();
+        long completed = counts.getOrDefault("done", 0L);
+        long failed = counts.getOrDefault("failed", 0L);
+
+        List<Map<String, Object>> failures = new ArrayList<>();
+        jdbcTemplate.query(SELECT_FAILURES_SQL, rs -> {
+            Map<String, Object> failure = new LinkedHashMap<>();
+            failure.put("userId", rs.getObject("user_id", UUID.class));
+            failure.put("error", rs.getString("error"));
+            failures.add(failure);
+        }, jobId, MAX_REPORTED_FAILURES);
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", jobId);
+        status.put("status", job.get("status"));
+        status.put("total", total);
+        status.put("completed", completed);
+        status.put("failed", failed);
+        status.put("pending", counts.getOrDefault("pending", 0L));
+        status.put("progress", total > 0 ? (completed + failed) * 100 / total : 100);
+        status.put("createdAt", job.get("created_at"));
+        status.put("updatedAt", job.get("updated_at"));
+        status.put("finishedAt", job.get("finished_at"));
+        status.put("failures", failures);
+        return Optional.of(status);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        try {
+            List<UUID> jobIds = jdbcTemplate.queryForList(SELECT_UNFINISHED_JOBS_SQL, UUID.class);
+            for (UUID jobId : jobIds) {
+                runner.execute(() -> runJob(jobId));
+            }
+            if (!jobIds.isEmpty()) {
+                logger.info("Resuming {} unfinished plan batch jobs", jobIds.size());
+            }
+        } catch (Exception e) {
+            logger.warn("Could not load unfinished plan batch jobs: {}", e.getMessage());
+        }
+    }
+
+    private void runJob(UUID jobId) {
+        try {
+            String planJson = jdbcTemplate.queryForObject(SELECT_JOB_REQUEST_SQL, String.class, jobId);
+            List<UUID> pendingUsers = jdbcTemplate.queryForList(SELECT_PENDING_ITEMS_SQL, UUID.class, jobId);
+            jdbcTemplate.update(MARK_JOB_RUNNING_SQL, jobId);
+            logger.info("Running plan batch job {}: {} users left", jobId, pendingUsers.size());
+
+            Job job = new Job(jobId, planJson, pendingUsers);
+            while (job.remaining.get() > 0 && !shuttingDown) {
+                if (results.size() >= writeBatchSize) {
+                    flush();
+                }
+                UUID userId = job.queue.poll(1, TimeUnit.SECONDS);
+                if (userId != null) {
+                    concurrency.acquire();
+                    process(job, userId);
+                }
+            }
+
+            // Write what is left; unwritten results are retried a bounded number of times, so this ends
+            while (!results.isEmpty() && !shuttingDown) {
+                flush();
+                if (!results.isEmpty()) {
+                    Thread.sleep(1000);
+                }
+            }
+            if (!shuttingDown && jdbcTemplate.update(MARK_JOB_COMPLETED_SQL, jobId, jobId) > 0) {
+                logger.info("Plan batch job {} completed", jobId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // The job stays running and resumes from its checkpoint on the next start
+            logger.error("Plan batch job {} stopped: {}", jobId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts one user's plan. Called holding a concurrency permit, which is released when the
+     * user's LLM call finishes or right away if no call is needed.
+     */
+    private void process(Job job, UUID userId) throws InterruptedException {
+        boolean started = false;
+        try {
+            UserContext userData = userContextService.get(userId);
+            if (userData == null) {
+                fail(job, userId, 0, "Unknown user");
+                return;
+            }
+            ExercisePlanRequest request = objectMapper.readValue(job.planJson, ExercisePlanRequest.class);
+            request.setUserId(userId.toString());
+            String cacheKey = ExercisePlanCache.canonicalKey(request, userData);
+
+            List<ExercisePlanResponse.Exercise> cached = planCache.get(cacheKey);
+            if (cached != null) {
+                succeed(job, userId, request, cached, "cached");
+                return;
+            }
+
+            tokenBudget.acquire(estimatedTokensPerPlan);
+            planService.generateWithAi(request, userData, cacheKey, ENDPOINT)
+                .whenComplete((exercises, error) -> {
+                    concurrency.release();
+                    if (error == null && !exercises.isEmpty()) {
+                        succeed(job, userId, request, exercises, "generated");
+                    } else {
+                        retryOrFail(job, userId, error != null
+                                ? (LlmConcurrencyLimiter.isRejection(error) ? "LLM busy" : describe(error))
+                                : "No usable plan in the AI answer");
+                    }
+                });
+            started = true;
+        } catch (JsonProcessingException e) {
+            fail(job, userId, 0, "Invalid plan parameters: " + e.getOriginalMessage());
+        } catch (RuntimeException e) {
+            retryOrFail(job, userId, describe(e));
+        } finally {
+            if (!started) {
+                concurrency.release();
+            }
+        }
+    }
+
+    private void succeed(Job job, UUID userId, ExercisePlanRequest request,
+                         List<ExercisePlanResponse.Exercise> exercises, String outcome) {
+        String planData;
+        try {
+            planData = objectMapper.writeValueAsString(planService.toPlan(exercises, request));
+        } catch (JsonProcessingException e) {
+            fail(job, userId, job.attempts.getOrDefault(userId, 0) + 1, "Could not serialize plan");
+            return;
+        }
+        results.add(new ItemResult(job.jobId, userId, "done", job.attempts.getOrDefault(userId, 0) + 1,
+                null, planData));
+        job.remaining.decrementAndGet();
+        count(outcome);
+    }
+
+    private void retryOrFail(Job job, UUID userId, String error) {
+        int attempts = job.attempts.merge(userId, 1, Integer::sum);
+        if (attempts < maxAttempts && !shuttingDown) {
+            logger.debug("Retrying plan for user {} in batch job {}: {}", userId, job.jobId, error);
+            job.queue.add(userId);
+            return;
+        }
+        fail(job, userId, attempts, error);
+    }
+
+    private void fail(Job job, UUID userId, int attempts, String error) {
+        results.add(new ItemResult(job.jobId, userId, "failed", attempts, error, null));
+        job.remaining.decrementAndGet();
+        count("failed");
+    }
+
+    /**
+     * Writes finished items: new plans go to generated_plans (replacing the user's active plan)
+     * and the items are checkpointed, all in one transaction.
+     */
+    @Scheduled(fixedDelayString = "${plan.batch.flush-interval-ms:2000}")
+    public void flush() {
+        if (results.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<ItemResult> batch = new ArrayList<>();
+            ItemResult result;
+            while ((result = results.poll()) != null) {
+                batch.add(result);
+            }
+
+            List<ItemResult> unwritten = BatchWrites.write(batch, this::write, this::rejected);
+            int dropped = 0;
+            for (ItemResult item : unwritten) {
+                if (++item.writeAttempts < MAX_WRITE_ATTEMPTS) {
+                    results.add(item);
+                } else {
+                    dropped++;
+                }
+            }
+            if (!unwritten.isEmpty()) {
+                logger.error("Database unavailable, will retry {} batch plan results and gave up on {} (left pending)",
+                        unwritten.size() - dropped, dropped);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // New plans replace the users' active plans and the items are checkpointed, in one transaction
+    private void write(List<ItemResult> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expiresAt = Timestamp.valueOf(LocalDateTime.now().plusDays(1)); // Same lifetime as GeneratedPlan
+        List<Object[]> deactivateArgs = new ArrayList<>();
+        List<Object[]> planArgs = new ArrayList<>();
+        List<Object[]> itemArgs = new ArrayList<>();
+        Set<UUID> jobIds = new LinkedHashSet<>();
+        for (ItemResult item : batch) {
+            if (item.planData != null) {
+                deactivateArgs.add(new Object[]{item.userId});
+                planArgs.add(new Object[]{item.userId, item.planData, now, expiresAt});
+            }
+            itemArgs.add(new Object[]{item.status, item.attempts, item.error, item.jobId, item.userId});
+            jobIds.add(item.jobId);
+        }
+        List<Object[]> jobArgs = new ArrayList<>();
+        for (UUID jobId : jobIds) {
+            jobArgs.add(new Object[]{jobId});
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!planArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(DEACTIVATE_PLANS_SQL, deactivateArgs);
+                jdbcTemplate.batchUpdate(INSERT_PLAN_SQL, planArgs);
+            }
+            jdbcTemplate.batchUpdate(UPDATE_ITEM_SQL, itemArgs);
+            jdbcTemplate.batchUpdate(TOUCH_JOB_SQL, jobArgs);
+        });
+        logger.debug("Wrote {} plans and checkpointed {} batch items", planArgs.size(), itemArgs.size());
+    }
+
+    // A plan the database refused is checkpointed as a failed item; a refused checkpoint is left pending
+    private void rejected(ItemResult item, Exception e) {
+        if (item.planData != null) {
+            logger.warn("Could not save batch plan for user {} in job {}: {}", item.userId, item.jobId, e.getMessage());
+            results.add(new ItemResult(item.jobId, item.userId, "failed", item.attempts, "Could not save plan", null));
+            count("failed");
+        } else {
+            logger.error("Could not checkpoint batch item for user {} in job {}: {}", item.userId, item.jobId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        runner.shutdownNow();
+        // Items still pending in the database are picked up again on the next start
+        flush();
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("plan.batch.items", "outcome", outcome).increment();
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private static final class Job {
+        private final UUID jobId;
+        private final String planJson;
+        private final BlockingQueue<UUID> queue;
+        private final AtomicInteger remaining;
+        private final Map<UUID, Integer> attempts = new ConcurrentHashMap<>();
+
+        private Job(UUID jobId, String planJson, List<UUID> pendingUsers) {
+            this.jobId = jobId;
+            this.planJson = planJson;
+            this.queue = new LinkedBlockingQueue<>(pendingUsers);
+            this.remaining = new AtomicInteger(pendingUsers.size());
+        }
+    }
+
+    private static final class ItemResult {
+        private final UUID jobId;
+        private final UUID userId;
+        private final String status;
+        private final int attempts;
+        private final String error;
+        private final String planData; // null for failed items
+        private int writeAttempts; // flushes that could not reach the database
+
+        private ItemResult(UUID jobId, UUID userId, String status, int attempts, String error, String planData) {
+            this.jobId = jobId;
+            this.userId = userId;
+            this.status = status;
+            this.attempts = attempts;
+            this.error = error;
+            this.planData = planData;
+        }
+    }
+}
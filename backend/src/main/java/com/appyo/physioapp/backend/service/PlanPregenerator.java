@@ -0,0 +1,200 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.ExercisePlanRequest;
+import com.appyo.physioapp.backend.model.ExercisePlanResponse;
+import com.appyo.physioapp.backend.model.UserPreferences;
+import com.appyo.physioapp.user.UserContext;
+import com.appyo.physioapp.user.UserContextService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PlanPregenerator
+ *
+ * Generates a user's exercise plan in the background as soon as their plan preferences are saved
+ * and stores it with {@link TempDataService#saveGeneratedPlan}, so GET /api/temp/plans/{userId}
+ * already has a plan when the user reaches the plan page.
+ *
+ * The work is low priority by design:
+ * - a small pool of minimum-priority threads (plan.pregeneration.threads) with a bounded queue;
+ *   when the queue is full the task is dropped, the user can still generate on demand
+ * - LLM calls are charged to their own "pregeneration" concurrency limit, so they cannot take
+ *   permits from interactive plan requests
+ * - at most one queued task per user; saving again before it runs only replaces the preferences
+ *   it will use
+ *
+ * A plan already in the plan cache is stored without calling the LLM, and the call goes through
+ * the single-flight registry, so a user who presses "Generate" meanwhile joins the same call.
+ * The result is not stored if the user got an active generated plan after saving their
+ * preferences; a background plan never replaces one the user asked for.
+ *
+ * Metrics:
+ * - plan.pregeneration.tasks (counter, tag outcome=generated|cached|empty|superseded|failed|deduplicated|rejected)
+ * - plan.pregeneration.queue (gauge): tasks waiting for a thread
+ */
+@Component
+public class PlanPregenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanPregenerator.class);
+
+    private static final String DEFAULT_AREA = "Full Body";
+
+    private final ExercisePlanService planService;
+    private final ExercisePlanCache planCache;
+    private final TempDataService tempDataService;
+    private final UserContextService userContextService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    // Latest preferences save per user with a queued task
+    private final Map<UUID, UserPreferencesSavedEvent> pending = new ConcurrentHashMap<>();
+
+    public PlanPregenerator(ExercisePlanService planService, ExercisePlanCache planCache,
+                            TempDataService tempDataService, UserContextService userContextService,
+                            ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                            @Value("${plan.pregeneration.enabled:true}") boolean enabled,
+                            @Value("${plan.pregeneration.threads:2}") int threads,
+                            @Value("${plan.pregeneration.queue-capacity:100}") int queueCapacity,
+                            @Value("${plan.pregeneration.timeout-ms:60000}") long timeoutMs) {
+        this.planService = planService;
+        this.planCache = planCache;
+        this.tempDataService = tempDataService;
+        this.userContextService = userContextService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.timeoutMs = timeoutMs;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "plan-pregeneration-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("plan.pregeneration.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+    }
+
+    @EventListener
+    public void onPreferencesSaved(UserPreferencesSavedEvent event) {
+        UserPreferences preferences = event.getPreferences();
+        if (!enabled || preferences == null || preferences.getUserId() == null) {
+            return;
+        }
+        UUID userId = preferences.getUserId();
+        if (pending.put(userId, event) != null) {
+            count("deduplicated");
+            return;
+        }
+        try {
+            executor.execute(() -> pregenerate(userId));
+        } catch (RejectedExecutionException e) {
+            pending.remove(userId);
+            count("rejected");
+            logger.debug("Plan pre-generation queue is full, skipping user {}", userId);
+        }
+    }
+
+    private void pregenerate(UUID userId) {
+        UserPreferencesSavedEvent event = pending.remove(userId);
+        if (event == null) {
+            return;
+        }
+        try {
+            ExercisePlanRequest request = toRequest(event.getPreferences());
+            UserContext userData = userContextService.get(userId);
+            String cacheKey = ExercisePlanCache.canonicalKey(request, userData);
+
+            String outcome = "cached";
+            List<ExercisePlanResponse.Exercise> exercises = planCache.get(cacheKey);
+            if (exercises == null) {
+                outcome = "generated";
+                CompletableFuture<List<ExercisePlanResponse.Exercise>> generation =
+                        planService.generateWithAi(request, userData, cacheKey, "pregeneration");
+                try {
+                    exercises = generation.get(timeoutMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    generation.cancel(true); // Leave the shared call; it stops if nobody else waits
+                    throw e;
+                }
+            }
+            if (exercises.isEmpty()) {
+                count("empty");
+                return;
+            }
+            if (hasPlanSince(userId, event.getSavedAt())) {
+                count("superseded");
+                logger.debug("User {} already has a newer plan, discarding the pre-generated one", userId);
+                return;
+            }
+
+            tempDataService.saveGeneratedPlan(userId,
+                    objectMapper.writeValueAsString(planService.toPlan(exercises, request)));
+            count(outcome);
+            logger.info("Pre-generated exercise plan for user {} ({})", userId, outcome);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            count("failed");
+            logger.warn("Plan pre-generation failed for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    // True if the user's active plan was created after the preferences were saved, i.e. by the user
+    private boolean hasPlanSince(UUID userId, LocalDateTime savedAt) {
+        return tempDataService.getLatestGeneratedPlan(userId)
+                .map(plan -> plan.getCreatedAt() != null && plan.getCreatedAt().isAfter(savedAt))
+                .orElse(false);
+    }
+
+    /**
+     * Maps saved preferences onto the plan request the plan page would send.
+     */
+    private static ExercisePlanRequest toRequest(UserPreferences preferences) {
+        ExercisePlanRequest request = new ExercisePlanRequest();
+        request.setUserId(preferences.getUserId().toString());
+        request.setDuration(preferences.getWorkoutDuration() != null
+                ? String.valueOf(preferences.getWorkoutDuration())
+                : "30");
+        request.setTargetedAreas(List.of(DEFAULT_AREA));
+        request.setDifficulty(preferences.getFitnessLevel());
+        request.setEquipment(preferences.getEquipmentAccess());
+        request.setGoals(preferences.getFitnessGoals());
+        request.setNotes(preferences.getInjuryConsiderations());
+        return request;
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("plan.pregeneration.tasks", "outcome", outcome).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -7,6 +7,7 @@ import com.appyo.physioapp.backend.repository.UserPreferencesRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,6 +28,9 @@ public class TempDataService {
     @Autowired
     private GeneratedPlanRepository generatedPlanRepository;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     // User Preferences Methods
     public UserPreferences saveUserPreferences(UUID userId, String fitnessLevel, Integer workoutDuration,
                                               String equipmentAccess, String injuryConsiderations, String fitnessGoals) {
@@ -41,7 +45,11 @@ public class TempDataService {
         // Create new preferences
         UserPreferences preferences = new UserPreferences(userId, fitnessLevel, workoutDuration, 
                                                         equipmentAccess, injuryConsiderations, fitnessGoals);
-        return userPreferencesRepository.save(preferences);
+        UserPreferences saved = userPreferencesRepository.save(preferences);
+        
+        // Lets the plan pre-generator warm this user's plan in the background
+        eventPublisher.publishEvent(new UserPreferencesSavedEvent(saved));
+        return saved;
     }
     
     public Optional<UserPreferences> getUserPreferences(UUID userId) {
@@ -0,0 +1,30 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.UserPreferences;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by {@link TempDataService} after a user's plan preferences were saved.
+ */
+public class UserPreferencesSavedEvent {
+
+    private final UserPreferences preferences;
+    private final LocalDateTime savedAt;
+
+    public UserPreferencesSavedEvent(UserPreferences preferences) {
+        this.preferences = preferences;
+        this.savedAt = LocalDateTime.now();
+    }
+
+    public UserPreferences getPreferences() {
+        return preferences;
+    }
+
+    /**
+     * @return when the preferences were saved, on the same clock as generated plans' created_at
+     */
+    public LocalDateTime getSavedAt() {
+        return savedAt;
+    }
+}
@@ -0,0 +1,176 @@
+package com.appyo.physioapp.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * BoundedExpiringCache
+ *
+ * A small concurrent in-memory cache with a per-entry expiry and an approximate LRU bound.
+ * Reads and writes go straight to a ConcurrentHashMap; when the map grows past maxSize a single
+ * thread purges expired entries and then drops the least recently used ones in one batch, so
+ * the eviction cost is amortised over many inserts instead of paid on every put.
+ *
+ * Hit, miss and eviction counts are kept in LongAdders and can be published to Micrometer
+ * with {@link #registerMetrics(MeterRegistry, String)}.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedExpiringCache<K, V> {
+
+    // After an eviction pass the cache is trimmed to this fraction of maxSize
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maxSize;
+    private final long defaultTtlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedExpiringCache(int maxSize, long defaultTtlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.defaultTtlMillis = defaultTtlMillis;
+    }
+
+    /**
+     * Returns the cached value, or null if it is absent or has expired.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        entry.lastAccessNanos = System.nanoTime();
+        hits.increment();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, System.currentTimeMillis() + defaultTtlMillis);
+    }
+
+    /**
+     * Stores a value that expires at the given epoch millisecond.
+     */
+    public void put(K key, V value, long expiresAtMillis) {
+        entries.put(key, new Entry<>(value, expiresAtMillis));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Removes every expired entry. Intended to be called periodically so idle entries
+     * do not hold memory until the next overflow.
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Publishes size, hit, miss and eviction counters under the standard Micrometer cache meter names.
+     */
+    public void registerMetrics(MeterRegistry registry, String cacheName) {
+        Gauge.builder("cache.size", this, BoundedExpiringCache::size)
+                .tag("cache", cacheName)
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, BoundedExpiringCache::hitCount)
+                .tag("cache", cacheName).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, BoundedExpiringCache::missCount)
+                .tag("cache", cacheName).tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", this, BoundedExpiringCache::evictionCount)
+                .tag("cache", cacheName)
+                .register(registry);
+    }
+
+    private void evict() {
+        // Only one thread evicts at a time; others keep serving from the map
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            purgeExpired();
+            int target = (int) (maxSize * EVICTION_TARGET);
+            int excess = entries.size() - target;
+            if (entries.size() <= maxSize || excess <= 0) {
+                return;
+            }
+
+            List<Map.Entry<K, Entry<V>>> snapshot = new ArrayList<>(entries.entrySet());
+            snapshot.sort(Comparator.comparingLong(e -> e.getValue().lastAccessNanos));
+            for (int i = 0; i < excess && i < snapshot.size(); i++) {
+                Map.Entry<K, Entry<V>> oldest = snapshot.get(i);
+                if (entries.remove(oldest.getKey(), oldest.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAtMillis;
+        private volatile long lastAccessNanos;
+
+        private Entry(V value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+            this.lastAccessNanos = System.nanoTime();
+        }
+
+        private boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.appyo.physioapp.chat;
+
+import com.appyo.physioapp.backend.model.Message;
+import com.appyo.physioapp.backend.model.Role;
+import com.appyo.physioapp.cache.BoundedExpiringCache;
+import com.appyo.physioapp.llm.TokenEstimator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * ChatConversationService
+ *
+ * Multi-turn chat sessions. Each conversation's latest turns (at most chat.history.max-turns) are
+ * kept in memory for chat.history.ttl-minutes after its last message; signed-in users' turns are
+ * also written to chatbot_interaction by {@link ChatInteractionWriter}, and a conversation that has
+ * left memory is reloaded from there when its owner continues it.
+ *
+ * Every request is built from a window of at most chat.context.max-tokens (estimated): the system
+ * prompt, the new message and as many of the newest turns as fit. When older turns do not fit,
+ * their questions are condensed into a short system note of at most chat.context.summary-max-tokens
+ * instead, so prompt size, cost and latency stay flat however long the conversation gets.
+ *
+ * Metrics:
+ * - chat.context.tokens (summary): estimated prompt tokens per request
+ * - chat.context.trimmed (counter): requests where older turns were summarized
+ * - cache.* (tag cache=chat-conversations): in-memory conversations
+ */
+@Service
+public class ChatConversationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatConversationService.class);
+
+    private static final String LOAD_TURNS_SQL = """
+        SELECT user_message, ai_response, "timestamp"
+        FROM chatbot_interaction
+        WHERE conversation_id = ? AND user_id = ?
+        ORDER BY "timestamp" DESC
+        LIMIT ?
+        """;
+
+    private static final int SUMMARY_CHARS_PER_QUESTION = 120;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatInteractionWriter writer;
+    private final BoundedExpiringCache<UUID, Conversation> conversations;
+    private final int maxTurns;
+    private final int maxContextTokens;
+    private final int summaryMaxTokens;
+    private final DistributionSummary contextTokens;
+    private final Counter trimmedCounter;
+
+    public ChatConversationService(JdbcTemplate jdbcTemplate, ChatInteractionWriter writer, MeterRegistry meterRegistry,
+                                   @Value("${chat.history.max-conversations:10000}") int maxConversations,
+                                   @Value("${chat.history.ttl-minutes:60}") long ttlMinutes,
+                                   @Value("${chat.history.max-turns:50}") int maxTurns,
+                                   @Value("${chat.context.max-tokens:3000}") int maxContextTokens,
+                                   @Value("${chat.context.summary-max-tokens:300}") int summaryMaxTokens) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writer = writer;
+        this.conversations = new BoundedExpiringCache<>(maxConversations, ttlMinutes * 60 * 1000);
+        this.conversations.registerMetrics(meterRegistry, "chat-conversations");
+        this.maxTurns = maxTurns;
+        this.maxContextTokens = maxContextTokens;
+        this.summaryMaxTokens = summaryMaxTokens;
+        this.contextTokens = DistributionSummary.builder("chat.context.tokens").baseUnit("tokens").register(meterRegistry);
+        this.trimmedCounter = Counter.builder("chat.context.trimmed").register(meterRegistry);
+    }
+
+    /**
+     * Continues the conversation with the given ID, or starts a new one if the ID is missing, unknown
+     * or belongs to someone else.
+     *
+     * @param conversationId the ID the client got from an earlier answer, or null
+     * @param userId the signed-in user, or null for anonymous chats (kept in memory only)
+     */
+    public Conversation open(String conversationId, UUID userId) {
+        UUID id = parseId(conversationId);
+        if (id != null) {
+            Conversation conversation = conversations.get(id);
+            if (conversation != null && conversation.belongsTo(userId)) {
+                return conversation;
+            }
+            if (conversation == null && userId != null) {
+                List<Turn> turns = load(id, userId);
+                if (!turns.isEmpty()) {
+                    conversation = new Conversation(id, userId, turns);
+                    conversations.put(id, conversation);
+                    return conversation;
+                }
+            }
+        }
+        Conversation created = new Conversation(UUID.randomUUID(), userId, List.of());
+        conversations.put(created.getId(), created);
+        return created;
+    }
+
+    /**
+     * Builds the request messages: system prompt, then a note summarizing turns that did not fit,
+     * then the newest turns in order, then the new user message.
+     */
+    public List<Message> buildMessages(Conversation conversation, String systemPrompt, String userMessage) {
+        List<Turn> history = conversation.snapshot();
+        int budget = maxContextTokens - TokenEstimator.estimate(systemPrompt) - TokenEstimator.estimate(userMessage);
+
+        int total = 0;
+        for (Turn turn : history) {
+            total += turn.tokens();
+        }
+        int keepFrom = 0;
+        if (total > budget) {
+            // Walk back from the newest turn, leaving room for the summary of the rest
+            int remaining = budget - summaryMaxTokens;
+            keepFrom = history.size();
+            while (keepFrom > 0 && history.get(keepFrom - 1).tokens() <= remaining) {
+                remaining -= history.get(keepFrom - 1).tokens();
+                keepFrom--;
+            }
+        }
+
+        List<Message> messages = new ArrayList<>();
+        messages.add(new Message(Role.SYSTEM, systemPrompt));
+        if (keepFrom > 0) {
+            messages.add(new Message(Role.SYSTEM, summarize(history.subList(0, keepFrom))));
+            trimmedCounter.increment();
+        }
+        for (Turn turn : history.subList(keepFrom, history.size())) {
+            messages.add(new Message(Role.USER, turn.userMessage));
+            messages.add(new Message(Role.ASSISTANT, turn.aiResponse));
+        }
+        messages.add(new Message(Role.USER, userMessage));
+        contextTokens.record(TokenEstimator.estimate(messages));
+        return messages;
+    }
+
+    /**
+     * Adds an answered message to the conversation and queues it for the database if the
+     * conversation has an owner.
+     */
+    public void recordTurn(Conversation conversation, String userMessage, String aiResponse) {
+        Turn turn = new Turn(userMessage, aiResponse, Instant.now());
+        conversation.append(turn, maxTurns);
+        conversations.put(conversation.getId(), conversation); // Restart the idle timeout
+        if (conversation.ownerId != null) {
+            writer.record(conversation.ownerId, conversation.getId(), turn.timestamp, userMessage, aiResponse);
+        }
+    }
+
+    @Scheduled(fixedRate = 60000) // Drop expired entries every minute
+    public void purgeExpired() {
+        conversations.purgeExpired();
+    }
+
+    // Condenses the patient's earlier questions, newest first, until the summary budget is used
+    private String summarize(List<Turn> dropped) {
+        String heading = "Earlier in this conversation (older messages omitted), the patient asked about:";
+        int budget = summaryMaxTokens - TokenEstimator.estimate(heading);
+        List<String> questions = new ArrayList<>();
+        for (int i = dropped.size() - 1; i >= 0; i--) {
+            String question = dropped.get(i).userMessage.strip().replaceAll("\\s+", " ");
+            if (question.length() > SUMMARY_CHARS_PER_QUESTION) {
+                question = question.substring(0, SUMMARY_CHARS_PER_QUESTION) + "...";
+            }
+            String line = "\n- " + question;
+            budget -= TokenEstimator.estimate(line);
+            if (budget < 0) {
+                break;
+            }
+            questions.add(line);
+        }
+        Collections.reverse(questions);
+        return heading + String.join("", questions);
+    }
+
+    private List<Turn> load(UUID conversationId, UUID userId) {
+        try {
+            List<Turn> turns = jdbcTemplate.query(LOAD_TURNS_SQL, (rs, rowNum) -> new Turn(
+                    rs.getString("user_message"),
+                    rs.getString("ai_response"),
+                    rs.getTimestamp("timestamp").toInstant()), conversationId, userId, maxTurns);
+            Collections.reverse(turns);
+            return turns;
+        } catch (Exception e) {
+            logger.warn("Could not load conversation {}: {}", conversationId, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static UUID parseId(String conversationId) {
+        if (conversationId == null || conversationId.isBlank()) {
+            return null;
+        }
+        try {
+            return UUID.fromString(conversationId.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One conversation's recent turns, oldest first.
+     */
+    public static final class Conversation {
+        private final UUID id;
+        private final UUID ownerId;
+        private final Deque<Turn> turns;
+
+        private Conversation(UUID id, UUID ownerId, List<Turn> turns) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.turns = new ArrayDeque<>(turns);
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        private boolean belongsTo(UUID userId) {
+            return ownerId == null || ownerId.equals(userId);
+        }
+
+        /**
+         * @return true if no message has been answered in this conversation yet
+         */
+        public synchronized boolean isEmpty() {
+            return turns.isEmpty();
+        }
+
+        private synchronized List<Turn> snapshot() {
+            return new ArrayList<>(turns);
+        }
+
+        private synchronized void append(Turn turn, int maxTurns) {
+            turns.addLast(turn);
+            while (turns.size() > maxTurns) {
+                turns.removeFirst();
+            }
+        }
+    }
+
+    private static final class Turn {
+        private final String userMessage;
+        private final String aiResponse;
+        private final Instant timestamp;
+        private final int tokens;
+
+        private Turn(String userMessage, String aiResponse, Instant timestamp) {
+            this.userMessage = userMessage != null ? userMessage : "";
+            this.aiResponse = aiResponse != null ? aiResponse : "";
+            this.timestamp = timestamp;
+            this.tokens = TokenEstimator.estimate(new Message(Role.USER, this.userMessage))
+                    + TokenEstimator.estimate(new Message(Role.ASSISTANT, this.aiResponse));
+        }
+
+        private int tokens() {
+            return tokens;
+        }
+    }
+}
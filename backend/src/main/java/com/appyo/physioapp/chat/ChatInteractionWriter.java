@@ -0,0 +1,138 @@
+package com.appyo.physioapp.chat;
+
+import com.appyo.physioapp.jdbc.BatchWrites;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ChatInteractionWriter
+ *
+ * Writes finished chat turns to chatbot_interaction in batched INSERTs on a short interval and at
+ * shutdown, so answering a message never waits for the database. If the database cannot be
+ * reached the batch is kept for the next round; beyond chat.history.max-pending queued turns the
+ * oldest are dropped, so an outage cannot grow the queue without bound. A turn the database
+ * rejects (e.g. its user was deleted) is dropped on its own, see {@link BatchWrites}.
+ *
+ * Metrics:
+ * - chat.history.write_queue (gauge): turns waiting to be written
+ * - chat.history.dropped (counter): turns discarded because the queue was full
+ * - chat.history.rejected (counter): turns the database refused to store
+ */
+@Component
+public class ChatInteractionWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatInteractionWriter.class);
+
+    // related_exercise_id defaults to a random UUID that would violate its foreign key
+    private static final String INSERT_SQL = """
+        INSERT INTO chatbot_interaction (user_id, conversation_id, "timestamp", user_message, ai_response, related_exercise_id)
+        VALUES (?, ?, ?, ?, ?, NULL)
+        """;
+
+    private final ConcurrentLinkedQueue<PendingTurn> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // Not synchronized: a virtual thread blocked in JDBC inside a monitor would pin its carrier
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxPending;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+
+    public ChatInteractionWriter(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                 @Value("${chat.history.max-pending:10000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxPending = maxPending;
+        this.droppedCounter = Counter.builder("chat.history.dropped").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("chat.history.rejected").register(meterRegistry);
+        Gauge.builder("chat.history.write_queue", size, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public void record(UUID userId, UUID conversationId, Instant timestamp, String userMessage, String aiResponse) {
+        enqueue(new PendingTurn(userId, conversationId, timestamp, userMessage, aiResponse));
+    }
+
+    @Scheduled(fixedDelayString = "${chat.history.flush-interval-ms:2000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<PendingTurn> batch = new ArrayList<>();
+            PendingTurn turn;
+            while ((turn = pending.poll()) != null) {
+                size.decrementAndGet();
+                batch.add(turn);
+            }
+
+            List<PendingTurn> unwritten = BatchWrites.write(batch, this::insert, (rejected, e) -> {
+                rejectedCounter.increment();
+                logger.warn("Dropping chat turn of user {} that could not be stored: {}", rejected.userId, e.getMessage());
+            });
+            if (unwritten.isEmpty()) {
+                logger.debug("Wrote {} chat turns", batch.size());
+            } else {
+                logger.error("Database unavailable, will retry {} chat turns", unwritten.size());
+                unwritten.forEach(this::enqueue);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void insert(List<PendingTurn> turns) {
+        List<Object[]> args = new ArrayList<>();
+        for (PendingTurn item : turns) {
+            args.add(new Object[]{item.userId, item.conversationId, Timestamp.from(item.timestamp),
+                    item.userMessage, item.aiResponse});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        logger.info("Writing {} buffered chat turns before shutdown", size.get());
+        flush();
+    }
+
+    private void enqueue(PendingTurn turn) {
+        pending.add(turn);
+        if (size.incrementAndGet() > maxPending && pending.poll() != null) {
+            size.decrementAndGet();
+            droppedCounter.increment();
+        }
+    }
+
+    private static final class PendingTurn {
+        private final UUID userId;
+        private final UUID conversationId;
+        private final Instant timestamp;
+        private final String userMessage;
+        private final String aiResponse;
+
+        private PendingTurn(UUID userId, UUID conversationId, Instant timestamp, String userMessage, String aiResponse) {
+            this.userId = userId;
+            this.conversationId = conversationId;
+            this.timestamp = timestamp;
+            this.userMessage = userMessage;
+            this.aiResponse = aiResponse;
+        }
+    }
+}
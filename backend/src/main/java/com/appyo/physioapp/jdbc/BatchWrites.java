@@ -0,0 +1,91 @@
+package com.appyo.physioapp.jdbc;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * BatchWrites
+ *
+ * Failure handling for the background writers that buffer rows and write them in batches. When
+ * the database cannot be reached, the whole batch is kept for the next round. When it rejects the
+ * batch because of one of its rows (a foreign key to a deleted user, say), retrying the batch would
+ * fail forever and block every later row, so the rows are written one at a time and only the
+ * rejected ones are dropped.
+ */
+public final class BatchWrites {
+
+    private BatchWrites() {
+    }
+
+    /**
+     * Writes the rows with one call, falling back to one call per row if the database rejects the batch.
+     *
+     * @param write writes the given rows, in its own transaction if it needs one
+     * @param rejected receives each row the database refused, with the error
+     * @return the rows that were not written because the database could not be reached; retry them later
+     */
+    public static <T> List<T> write(List<T> rows, Consumer<List<T>> write, BiConsumer<T, Exception> rejected) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        try {
+            write.accept(rows);
+            return List.of();
+        } catch (Exception e) {
+            if (isConnectionFailure(e)) {
+                return rows;
+            }
+            if (rows.size() == 1) {
+                rejected.accept(rows.get(0), e);
+                return List.of();
+            }
+        }
+
+        for (int i = 0; i < rows.size(); i++) {
+            T row = rows.get(i);
+            try {
+                write.accept(List.of(row));
+            } catch (Exception e) {
+                if (isConnectionFailure(e)) {
+                    return new ArrayList<>(rows.subList(i, rows.size()));
+                }
+                rejected.accept(row, e);
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * @return true if the error (or a cause) means the database was unreachable or the statement may
+     *         succeed when retried, as opposed to a row the database will always reject
+     */
+    public static boolean isConnectionFailure(Throwable error) {
+        Throwable current = error;
+        while (current != null) {
+            if (current instanceof TransientDataAccessException
+                    || current instanceof RecoverableDataAccessException
+                    || current instanceof DataAccessResourceFailureException
+                    || current instanceof CannotCreateTransactionException
+                    || current instanceof SQLTransientException
+                    || current instanceof SQLRecoverableException) {
+                return true;
+            }
+            // SQLSTATE class 08: connection exception
+            if (current instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                return true;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,18 @@
+package com.appyo.physioapp.llm;
+
+/**
+ * Receives a streamed chat completion as it arrives. Callbacks run on an HTTP client thread,
+ * in order, and exactly one of {@link #onComplete(String)} or {@link #onError(Throwable)} ends the stream
+ * unless the caller cancels it first, in which case no further callbacks are made.
+ */
+public interface ChatStreamListener {
+
+    void onToken(String token);
+
+    /**
+     * @param finishReason the provider's finish_reason ("stop", "length", ...), or null if none was sent
+     */
+    void onComplete(String finishReason);
+
+    void onError(Throwable error);
+}
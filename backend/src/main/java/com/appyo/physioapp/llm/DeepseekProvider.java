@@ -0,0 +1,40 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * DeepSeek adapter over the shared {@link LlmClient}; requests already use DeepSeek's format.
+ */
+@Component
+public class DeepseekProvider implements LlmProvider {
+
+    private final LlmClient llmClient;
+    private final boolean enabled;
+
+    public DeepseekProvider(LlmClient llmClient,
+                            @Value("${deepseek.api.key:}") String apiKey,
+                            @Value("${llm.providers.deepseek.enabled:true}") boolean enabled) {
+        this.llmClient = llmClient;
+        this.enabled = enabled && !apiKey.isBlank();
+    }
+
+    @Override
+    public String name() {
+        return "deepseek";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletionResponse> complete(ChatCompletionRequest request) {
+        return llmClient.complete(request);
+    }
+}
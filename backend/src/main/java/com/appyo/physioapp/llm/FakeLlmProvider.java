@@ -0,0 +1,86 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import com.appyo.physioapp.backend.model.Message;
+import com.appyo.physioapp.backend.model.Role;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FakeLlmProvider
+ *
+ * A local provider with no network access for development and failover testing. It answers after
+ * llm.providers.fake.latency-ms (plus up to jitter-ms) and fails a configurable fraction of calls,
+ * so the router's latency ranking, circuit breaker and hedging can be exercised without spending
+ * provider tokens. Off unless llm.providers.fake.enabled=true.
+ *
+ * The answer is a fixed exercise list that the plan parser accepts, which also makes it a usable
+ * chat reply.
+ */
+@Component
+public class FakeLlmProvider implements LlmProvider {
+
+    private static final String ANSWER = """
+        [{"name": "Glute Bridge", "description": "Hip extension lying on your back", "sets": "3", "reps": "12", \
+        "equipment": "None", "difficulty": "Beginner", "instructions": "1. Lie on your back with knees bent\\n2. Lift your hips\\n3. Lower slowly"}, \
+        {"name": "Bird Dog", "description": "Core stability on hands and knees", "sets": "3", "reps": "10", \
+        "equipment": "None", "difficulty": "Beginner", "instructions": "1. Start on hands and knees\\n2. Extend opposite arm and leg\\n3. Return and switch sides"}]""";
+
+    private final boolean enabled;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double failureRate;
+
+    public FakeLlmProvider(@Value("${llm.providers.fake.enabled:false}") boolean enabled,
+                           @Value("${llm.providers.fake.latency-ms:200}") long latencyMs,
+                           @Value("${llm.providers.fake.jitter-ms:0}") long jitterMs,
+                           @Value("${llm.providers.fake.failure-rate:0}") double failureRate) {
+        this.enabled = enabled;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public String name() {
+        return "fake";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletionResponse> complete(ChatCompletionRequest request) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMs + (jitterMs > 0 ? random.nextLong(jitterMs + 1) : 0);
+        boolean fail = random.nextDouble() < failureRate;
+
+        CompletableFuture<ChatCompletionResponse> future = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            if (fail) {
+                future.completeExceptionally(new IOException("Simulated provider failure"));
+                return;
+            }
+            ChatCompletionResponse.Choice choice = new ChatCompletionResponse.Choice();
+            choice.setIndex(0);
+            choice.setMessage(new Message(Role.ASSISTANT, ANSWER));
+            choice.setFinishReason("stop");
+
+            ChatCompletionResponse response = new ChatCompletionResponse();
+            response.setModel("fake");
+            response.setObject("chat.completion");
+            response.setChoices(List.of(choice));
+            future.complete(response);
+        });
+        return future;
+    }
+}
@@ -0,0 +1,141 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import com.appyo.physioapp.backend.model.Message;
+import com.appyo.physioapp.backend.model.Role;
+import com.google.genai.Client;
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
+import com.google.genai.types.Part;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * GeminiProvider
+ *
+ * Google Gemini adapter built on the google-genai SDK. System messages become the system
+ * instruction, user and assistant messages become "user" and "model" turns, JSON mode maps to the
+ * application/json response type, and the answer is wrapped back into a single-choice
+ * ChatCompletionResponse.
+ *
+ * Enabled when gemini.api.key is set. The SDK does not abort an HTTP call when its future is
+ * cancelled, so a cancelled Gemini request still runs to completion in the background.
+ *
+ * @author PhysioApp Team
+ */
+@Component
+public class GeminiProvider implements LlmProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiProvider.class);
+
+    private final Client client; // null when no API key is configured
+    private final String model;
+
+    public GeminiProvider(@Value("${gemini.api.key:}") String apiKey,
+                          @Value("${gemini.model:gemini-2.0-flash}") String model,
+                          @Value("${llm.http.read-timeout-ms:60000}") int timeoutMs,
+                          @Value("${llm.providers.gemini.enabled:true}") boolean enabled) {
+        this.model = model;
+        if (enabled && !apiKey.isBlank()) {
+            this.client = Client.builder()
+                    .apiKey(apiKey)
+                    .httpOptions(HttpOptions.builder().timeout(timeoutMs).build())
+                    .build();
+            logger.info("Gemini provider enabled with model {}", model);
+        } else {
+            this.client = null;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "gemini";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return client != null;
+    }
+
+    @Override
+    public CompletableFuture<ChatCompletionResponse> complete(ChatCompletionRequest request) {
+        if (client == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Gemini is not configured"));
+        }
+
+        StringBuilder systemInstruction = new StringBuilder();
+        List<Content> contents = new ArrayList<>();
+        for (Message message : request.getMessages()) {
+            if (message.getRole() == Role.SYSTEM) {
+                systemInstruction.append(message.getContent()).append('\n');
+            } else {
+                contents.add(Content.builder()
+                        .role(message.getRole() == Role.ASSISTANT ? "model" : "user")
+                        .parts(List.of(Part.fromText(message.getContent())))
+                        .build());
+            }
+        }
+
+        GenerateContentConfig.Builder config = GenerateContentConfig.builder()
+                .temperature((float) request.getTemperature());
+        if (request.getResponseFormat() != null && "json_object".equals(request.getResponseFormat().getType())) {
+            config.responseMimeType("application/json");
+        }
+        if (request.getMaxTokens() != null) {
+            config.maxOutputTokens(request.getMaxTokens());
+        }
+        if (request.getStop() != null && !request.getStop().isEmpty()) {
+            config.stopSequences(request.getStop());
+        }
+        if (systemInstruction.length() > 0) {
+            config.systemInstruction(Content.fromParts(Part.fromText(systemInstruction.toString().trim())));
+        }
+
+        return client.async.models.generateContent(model, contents, config.build())
+                .thenApply(this::toChatCompletion);
+    }
+
+    private ChatCompletionResponse toChatCompletion(GenerateContentResponse response) {
+        String text = response.text();
+        if (text == null || text.isEmpty()) {
+            throw new IllegalStateException("Gemini returned no text, finish reason " + response.finishReason());
+        }
+
+        ChatCompletionResponse.Choice choice = new ChatCompletionResponse.Choice();
+        choice.setIndex(0);
+        choice.setMessage(new Message(Role.ASSISTANT, text));
+        choice.setFinishReason(response.finishReason() != null
+                ? response.finishReason().toString().toLowerCase()
+                : null);
+
+        ChatCompletionResponse completion = new ChatCompletionResponse();
+        completion.setModel(model);
+        completion.setObject("chat.completion");
+        completion.setChoices(List.of(choice));
+        response.usageMetadata().ifPresent(metadata -> {
+            ChatCompletionResponse.Usage usage = new ChatCompletionResponse.Usage();
+            usage.setPromptTokens(metadata.promptTokenCount().orElse(null));
+            usage.setCompletionTokens(metadata.candidatesTokenCount().orElse(null));
+            usage.setTotalTokens(metadata.totalTokenCount().orElse(null));
+            completion.setUsage(usage);
+        });
+        return completion;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (client != null) {
+            client.close();
+        }
+    }
+}
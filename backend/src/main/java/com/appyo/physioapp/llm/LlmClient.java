@@ -0,0 +1,254 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionChunk;
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import com.appyo.physioapp.backend.config.VirtualThreadDiagnostics;
+import com.appyo.physioapp.backend.service.DeepseekApiService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Invocation;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LlmClient
+ *
+ * The one HTTP client used for calls to the language-model provider. ChatController and
+ * ExerciseRecommendationController inject this instead of building their own OkHttpClient and
+ * Retrofit instance, so all LLM traffic shares one connection pool (and its TLS sessions),
+ * one dispatcher with per-host limits, and one ObjectMapper.
+ *
+ * HTTP/2 is negotiated through ALPN where the provider supports it, which lets concurrent
+ * requests share a single connection; HTTP/1.1 remains the fallback.
+ *
+ * When the response headers of a non-streamed completion arrive, the call's time to first byte is
+ * reported to {@link LlmMetrics}; Retrofit callbacks only run once the whole body is parsed.
+ *
+ * The ObjectMapper is deliberately not a Spring bean: declaring one would replace the
+ * auto-configured mapper used by the REST controllers.
+ *
+ * @author PhysioApp Team
+ */
+@Component
+public class LlmClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmClient.class);
+
+    private final OkHttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final DeepseekApiService deepseek;
+
+    public LlmClient(LlmMetrics llmMetrics,
+                     @Value("${deepseek.api.key:}") String apiKey,
+                     @Value("${deepseek.api.url:https://api.deepseek.com}") String apiUrl,
+                     @Value("${llm.http.connect-timeout-ms:10000}") long connectTimeoutMs,
+                     @Value("${llm.http.read-timeout-ms:60000}") long readTimeoutMs,
+                     @Value("${llm.http.write-timeout-ms:30000}") long writeTimeoutMs,
+                     @Value("${llm.http.max-idle-connections:16}") int maxIdleConnections,
+                     @Value("${llm.http.keep-alive-ms:300000}") long keepAliveMs,
+                     @Value("${llm.http.max-requests:128}") int maxRequests,
+                     @Value("${llm.http.max-requests-per-host:64}") int maxRequestsPerHost,
+                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        // Streaming reads block a dispatcher thread for the whole answer; virtual threads make that cheap
+        Dispatcher dispatcher = VirtualThreadDiagnostics.isActive(virtualThreads)
+                ? new Dispatcher(newVirtualThreadExecutor())
+                : new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        this.httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .header("Authorization", "Bearer " + apiKey)
+                        .build()))
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMs, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(call -> new EventListener() {
+                    @Override
+                    public void responseHeadersEnd(okhttp3.Call call, okhttp3.Response response) {
+                        // Retrofit tags each request with the service method call that made it
+                        Invocation invocation = call.request().tag(Invocation.class);
+                        if (invocation != null && !invocation.arguments().isEmpty()
+                                && invocation.arguments().get(0) instanceof ChatCompletionRequest request) {
+                            llmMetrics.responseHeaders(request);
+                        }
+                    }
+                })
+                .build();
+
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        String baseUrl = apiUrl.endsWith("/") ? apiUrl : apiUrl + "/";
+        this.deepseek = new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(httpClient)
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .build()
+                .create(DeepseekApiService.class);
+
+        logger.info("LLM client for {} with {} idle connections, {} requests per host",
+                baseUrl, maxIdleConnections, maxRequestsPerHost);
+    }
+
+    /**
+     * Sends a chat completion without blocking the calling thread. The future completes on an
+     * HTTP client thread with the parsed response, or exceptionally with an IOException for
+     * network errors and non-2xx answers. Cancelling the future cancels the upstream call.
+     */
+    public CompletableFuture<ChatCompletionResponse> complete(ChatCompletionRequest request) {
+        CompletableFuture<ChatCompletionResponse> future = new CompletableFuture<>();
+        Call<ChatCompletionResponse> call = deepseek.createChatCompletion(request);
+        call.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(Call<ChatCompletionResponse> call, Response<ChatCompletionResponse> response) {
+                if (response.isSuccessful() && response.body() != null) {
+                    future.complete(response.body());
+                    return;
+                }
+                String error = "HTTP " + response.code();
+                try {
+                    if (response.errorBody() != null) {
+                        error += ": " + response.errorBody().string();
+                    }
+                } catch (IOException ignored) {
+                    // Keep the status code only
+                }
+                future.completeExceptionally(new IOException("LLM call failed with " + error));
+            }
+
+            @Override
+            public void onFailure(Call<ChatCompletionResponse> call, Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Starts a streamed chat completion and returns immediately. Tokens are parsed from the
+     * upstream SSE events as they arrive and handed to the listener on an HTTP client thread.
+     *
+     * @return the upstream call; cancel it to stop generation when the client goes away
+     */
+    public Call<ResponseBody> streamChat(ChatCompletionRequest request, ChatStreamListener listener) {
+        request.setStream(true);
+        Call<ResponseBody> call = deepseek.streamChatCompletion(request);
+        call.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    if (response.errorBody() != null) {
+                        response.errorBody().close();
+                    }
+                    listener.onError(new IOException("LLM stream failed with HTTP " + response.code()));
+                    return;
+                }
+                try (ResponseBody body = response.body()) {
+                    readEvents(body.source(), call, listener);
+                } catch (Exception e) {
+                    if (!call.isCanceled()) {
+                        listener.onError(e);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ResponseBody> call, Throwable t) {
+                if (!call.isCanceled()) {
+                    listener.onError(t);
+                }
+            }
+        });
+        return call;
+    }
+
+    // Reads "data: {chunk}" lines until "data: [DONE]"; blank separators and ": keep-alive" comments are skipped
+    private void readEvents(BufferedSource source, Call<ResponseBody> call, ChatStreamListener listener) throws IOException {
+        String finishReason = null;
+        String line;
+        while (!call.isCanceled() && (line = source.readUtf8Line()) != null) {
+            if (!line.startsWith("data:")) {
+                continue;
+            }
+            String data = line.substring(5).trim();
+            if ("[DONE]".equals(data)) {
+                break;
+            }
+            if (data.isEmpty()) {
+                continue;
+            }
+
+            ChatCompletionChunk chunk = objectMapper.readValue(data, ChatCompletionChunk.class);
+            if (chunk.getChoices() == null) {
+                continue;
+            }
+            for (ChatCompletionChunk.Choice choice : chunk.getChoices()) {
+                if (choice.getDelta() != null && choice.getDelta().getContent() != null
+                        && !choice.getDelta().getContent().isEmpty()) {
+                    listener.onToken(choice.getDelta().getContent());
+                }
+                if (choice.getFinishReason() != null) {
+                    finishReason = choice.getFinishReason();
+                }
+            }
+        }
+        if (!call.isCanceled()) {
+            listener.onComplete(finishReason);
+        }
+    }
+
+    public OkHttpClient httpClient() {
+        return httpClient;
+    }
+
+    public ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    // Looked up reflectively because the build still targets Java 17; only called on a 21+ runtime
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available on this runtime", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+}
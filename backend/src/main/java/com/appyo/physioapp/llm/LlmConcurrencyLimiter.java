@@ -0,0 +1,135 @@
+package com.appyo.physioapp.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * LlmConcurrencyLimiter
+ *
+ * Caps the number of LLM requests each endpoint may have in flight at once, so a burst of slow
+ * generations is rejected quickly (503) instead of queueing up behind the provider. Limits are read
+ * from llm.concurrency.{endpoint}.max-in-flight; a value of 0 disables the limit for that endpoint.
+ *
+ * Permits are taken with a non-blocking tryAcquire and must be released when the LLM call finishes,
+ * whether it succeeded, failed or was cancelled.
+ *
+ * Metrics:
+ * - llm.in_flight (gauge, tag endpoint): LLM requests currently running
+ * - llm.rejected (counter, tag endpoint): requests turned away because the endpoint was at its limit
+ */
+@Component
+public class LlmConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmConcurrencyLimiter.class);
+
+    // Default max in-flight requests per endpoint
+    private static final Map<String, Integer> DEFAULTS = Map.of(
+            "chat", 32,
+            "chat-stream", 64,
+            "recommendations", 16,
+            "pregeneration", 2,
+            "batch", 4
+    );
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    public LlmConcurrencyLimiter(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return true if the request may proceed; the caller must then call {@link #release(String)} exactly once
+     */
+    public boolean tryAcquire(String endpoint) {
+        Limit limit = limits.computeIfAbsent(endpoint, this::createLimit);
+        if (limit.permits == null || limit.permits.tryAcquire()) {
+            return true;
+        }
+        limit.rejected.increment();
+        return false;
+    }
+
+    public void release(String endpoint) {
+        Limit limit = limits.get(endpoint);
+        if (limit != null && limit.permits != null) {
+            limit.permits.release();
+        }
+    }
+
+    /**
+     * Starts the call only if the endpoint has a free permit and releases the permit when the returned
+     * future completes. When the endpoint is at its limit the future fails with a
+     * {@link RejectedExecutionException} instead; see {@link #isRejection(Throwable)}.
+     *
+     * @return the future produced by the call itself, so cancelling it still cancels the upstream request
+     */
+    public <T> CompletableFuture<T> withPermit(String endpoint, Supplier<CompletableFuture<T>> call) {
+        if (!tryAcquire(endpoint)) {
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many " + endpoint + " requests in flight"));
+        }
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            release(endpoint);
+            throw e;
+        }
+        future.whenComplete((result, error) -> release(endpoint));
+        return future;
+    }
+
+    /**
+     * @return true if the exception (or its cause) means the request was turned away by {@link #withPermit}
+     */
+    public static boolean isRejection(Throwable throwable) {
+        Throwable current = throwable;
+        while (current != null) {
+            if (current instanceof RejectedExecutionException) {
+                return true;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    private Limit createLimit(String endpoint) {
+        int maxInFlight = environment.getProperty("llm.concurrency." + endpoint + ".max-in-flight",
+                Integer.class, DEFAULTS.getOrDefault(endpoint, 0));
+        Semaphore permits = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+
+        if (permits != null) {
+            Gauge.builder("llm.in_flight", permits, p -> maxInFlight - p.availablePermits())
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            logger.info("LLM concurrency limit for {}: {} in flight", endpoint, maxInFlight);
+        }
+        Counter rejected = Counter.builder("llm.rejected").tag("endpoint", endpoint).register(meterRegistry);
+        return new Limit(permits, rejected);
+    }
+
+    private static final class Limit {
+        private final Semaphore permits; // null when unlimited
+        private final Counter rejected;
+
+        private Limit(Semaphore permits, Counter rejected) {
+            this.permits = permits;
+            this.rejected = rejected;
+        }
+    }
+}
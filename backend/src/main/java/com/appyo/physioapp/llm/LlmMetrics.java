@@ -0,0 +1,247 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * LlmMetrics
+ *
+ * Records what every LLM call costs and how it ended, tagged by endpoint (the caller's concurrency
+ * endpoint: chat, chat-stream, recommendations, ...) and model. Provider-level latency and circuit
+ * state are recorded separately by {@link LlmRouter}; these meters are what the endpoint saw,
+ * including failover and hedging. All of them are listed under /actuator/metrics.
+ *
+ * Requests turned away by {@link LlmConcurrencyLimiter} never reach the provider and are counted
+ * there (llm.rejected), not here.
+ *
+ * Cost uses per-model list prices from llm.pricing.{model}.prompt-per-million and
+ * llm.pricing.{model}.completion-per-million (USD per million tokens); models without a price
+ * count 0.
+ *
+ * Metrics:
+ * - llm.request.latency (timer, tags endpoint, model, outcome=success|error): whole call, p50/p95/p99
+ * - llm.request.time_to_first_byte (timer, tags endpoint, model): until the provider's response headers,
+ *   for non-streamed DeepSeek calls (reported by {@link LlmClient})
+ * - llm.stream.time_to_first_token (timer, tags endpoint, model): until the first streamed token
+ * - llm.tokens (summary, tags endpoint, model, type=prompt|completion): tokens per call, from usage
+ * - llm.cost (counter, tags endpoint, model): USD
+ * - llm.finish_reason (counter, tags endpoint, model, reason): stop, length, ...
+ * - llm.errors (counter, tags endpoint, model, error=timeout|cancelled|http_4xx|http_5xx|network|other)
+ * - llm.plan.parse (counter, tags endpoint, outcome=parsed|empty): whether an answer held a usable plan
+ */
+@Component
+public class LlmMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+    // Calls being timed, by request, so LlmClient can report their response headers; identity, not equals
+    private final Map<ChatCompletionRequest, FirstByte> inFlight = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    public LlmMetrics(MeterRegistry meterRegistry, Environment environment) {
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+    }
+
+    /**
+     * Starts the call and records its outcome when it completes.
+     *
+     * @return the call's own future, so cancelling it still cancels the upstream request
+     */
+    public CompletableFuture<ChatCompletionResponse> timed(String endpoint, ChatCompletionRequest request,
+                                                           Supplier<CompletableFuture<ChatCompletionResponse>> call) {
+        long startNanos = System.nanoTime();
+        inFlight.put(request, new FirstByte(endpoint, request.getModel(), startNanos));
+        CompletableFuture<ChatCompletionResponse> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(request);
+            throw e;
+        }
+        future.whenComplete((response, error) -> {
+            inFlight.remove(request);
+            long elapsed = System.nanoTime() - startNanos;
+            String model = response != null && response.getModel() != null ? response.getModel() : request.getModel();
+            if (error != null) {
+                latency(endpoint, model, "error").record(elapsed, TimeUnit.NANOSECONDS);
+                recordError(endpoint, model, error);
+                return;
+            }
+            latency(endpoint, model, "success").record(elapsed, TimeUnit.NANOSECONDS);
+            if (response.getChoices() != null && !response.getChoices().isEmpty()) {
+                finishReason(endpoint, model, response.getChoices().get(0).getFinishReason());
+            }
+            ChatCompletionResponse.Usage usage = response.getUsage();
+            if (usage != null) {
+                recordUsage(endpoint, model, usage.getPromptTokens(), usage.getCompletionTokens());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Records the time to first byte of a call started through {@link #timed}, once per call even
+     * when failover or hedging sends it to the provider more than once. Requests not being timed
+     * are ignored.
+     */
+    public void responseHeaders(ChatCompletionRequest request) {
+        FirstByte firstByte = inFlight.get(request);
+        if (firstByte != null && firstByte.seen.compareAndSet(false, true)) {
+            timeToFirstByte(firstByte.endpoint, firstByte.model)
+                    .record(System.nanoTime() - firstByte.startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Starts timing a streamed call; report its progress through the returned handle.
+     */
+    public StreamTimer startStream(String endpoint, String model) {
+        return new StreamTimer(endpoint, model);
+    }
+
+    /**
+     * Records whether an LLM answer contained a usable exercise plan.
+     */
+    public void recordPlanParse(String endpoint, boolean parsed) {
+        meterRegistry.counter("llm.plan.parse", "endpoint", endpoint, "outcome", parsed ? "parsed" : "empty").increment();
+    }
+
+    private Timer latency(String endpoint, String model, String outcome) {
+        return Timer.builder("llm.request.latency")
+                .tags("endpoint", endpoint, "model", model, "outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private Timer timeToFirstByte(String endpoint, String model) {
+        return Timer.builder("llm.request.time_to_first_byte")
+                .tags("endpoint", endpoint, "model", model)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private void finishReason(String endpoint, String model, String reason) {
+        meterRegistry.counter("llm.finish_reason", "endpoint", endpoint, "model", model,
+                "reason", reason != null ? reason : "unknown").increment();
+    }
+
+    private void recordUsage(String endpoint, String model, Integer promptTokens, Integer completionTokens) {
+        int prompt = promptTokens != null ? promptTokens : 0;
+        int completion = completionTokens != null ? completionTokens : 0;
+        tokens(endpoint, model, "prompt").record(prompt);
+        tokens(endpoint, model, "completion").record(completion);
+
+        double cost = prompt * price(model, "prompt") / 1_000_000 + completion * price(model, "completion") / 1_000_000;
+        if (cost > 0) {
+            meterRegistry.counter("llm.cost", "endpoint", endpoint, "model", model).increment(cost);
+        }
+    }
+
+    private DistributionSummary tokens(String endpoint, String model, String type) {
+        return DistributionSummary.builder("llm.tokens")
+                .baseUnit("tokens")
+                .tags("endpoint", endpoint, "model", model, "type", type)
+                .register(meterRegistry);
+    }
+
+    private double price(String model, String type) {
+        return environment.getProperty("llm.pricing." + model + "." + type + "-per-million", Double.class, 0.0);
+    }
+
+    private void recordError(String endpoint, String model, Throwable error) {
+        meterRegistry.counter("llm.errors", "endpoint", endpoint, "model", model, "error", classify(error)).increment();
+    }
+
+    /**
+     * @return a low-cardinality error class for tagging
+     */
+    private static String classify(Throwable error) {
+        Throwable current = error;
+        while (current != null) {
+            if (current instanceof CancellationException) {
+                return "cancelled";
+            }
+            if (current instanceof TimeoutException || current instanceof InterruptedIOException) {
+                return "timeout";
+            }
+            String message = current.getMessage();
+            if (current instanceof IOException && message != null && message.contains("HTTP 4")) {
+                return "http_4xx";
+            }
+            if (current instanceof IOException && message != null && message.contains("HTTP 5")) {
+                return "http_5xx";
+            }
+            if (current instanceof IOException) {
+                return "network";
+            }
+            current = current.getCause();
+        }
+        return "other";
+    }
+
+    private static final class FirstByte {
+        private final String endpoint;
+        private final String model;
+        private final long startNanos;
+        private final AtomicBoolean seen = new AtomicBoolean();
+
+        private FirstByte(String endpoint, String model, long startNanos) {
+            this.endpoint = endpoint;
+            this.model = model;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * Timing for one streamed answer. Call {@link #firstToken()} for every token (only the first
+     * is recorded) and exactly one of {@link #complete(String)} or {@link #error(Throwable)}.
+     */
+    public final class StreamTimer {
+        private final String endpoint;
+        private final String model;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean firstTokenSeen = new AtomicBoolean();
+
+        private StreamTimer(String endpoint, String model) {
+            this.endpoint = endpoint;
+            this.model = model;
+        }
+
+        public void firstToken() {
+            if (firstTokenSeen.compareAndSet(false, true)) {
+                Timer.builder("llm.stream.time_to_first_token")
+                        .tags("endpoint", endpoint, "model", model)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        public void complete(String reason) {
+            latency(endpoint, model, "success").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            finishReason(endpoint, model, reason);
+        }
+
+        public void error(Throwable error) {
+            latency(endpoint, model, "error").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            recordError(endpoint, model, error);
+        }
+    }
+}
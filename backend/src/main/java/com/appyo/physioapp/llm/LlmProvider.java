@@ -0,0 +1,32 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A language-model provider the {@link LlmRouter} can send chat completions to.
+ *
+ * Requests and responses use the OpenAI-style chat completion model the rest of the app already
+ * speaks; adapters for providers with a different API translate both ways. The model named in the
+ * request is the DeepSeek one, so adapters for other providers substitute their own.
+ */
+public interface LlmProvider {
+
+    /**
+     * @return short provider name used in configuration, logs and metric tags
+     */
+    String name();
+
+    /**
+     * @return false if the provider is missing its credentials or switched off, so the router skips it
+     */
+    boolean isEnabled();
+
+    /**
+     * Sends the completion without blocking. The future fails with an exception on network errors and
+     * unusable answers; cancelling it should cancel the upstream call where the provider allows.
+     */
+    CompletableFuture<ChatCompletionResponse> complete(ChatCompletionRequest request);
+}
@@ -0,0 +1,378 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LlmRouter
+ *
+ * Sends chat completions to the best available {@link LlmProvider} and fails over to the next one
+ * when a call fails, so a slow or broken DeepSeek no longer turns into a canned apology while
+ * Gemini is healthy.
+ *
+ * Routing:
+ * - Providers are listed in llm.router.providers; disabled ones (no API key) are skipped.
+ * - Each provider keeps a rolling window of recent calls (llm.router.window-seconds). The expected
+ *   cost of a provider is its p95 latency divided by its success rate; providers are tried
+ *   cheapest first. A provider with too few recent calls is assumed to cost
+ *   llm.router.default-latency-ms, so it is tried again once the leader gets slower than that.
+ *   Ties keep the configured order.
+ * - A per-provider circuit breaker opens when the error rate over at least min-calls recent calls
+ *   reaches llm.router.circuit.error-rate, skips the provider for open-ms, then lets a single trial
+ *   call through and closes again if it succeeds.
+ *
+ * Hedging (llm.router.hedge.enabled): if the first provider has not answered after
+ * llm.router.hedge.delay-ms (0 = its current p95), the next provider is started as well. The first
+ * successful answer wins and the other call is cancelled.
+ *
+ * Cancelling the returned future cancels every call still running for it.
+ *
+ * Metrics:
+ * - llm.provider.requests (counter, tags provider, outcome=success|failure)
+ * - llm.provider.latency (timer, tag provider)
+ * - llm.provider.circuit_open (gauge, tag provider): 1 while the breaker is open
+ * - llm.router.failovers (counter): calls retried on another provider after a failure
+ * - llm.router.hedges (counter): hedge calls started
+ *
+ * @author PhysioApp Team
+ */
+@Component
+public class LlmRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmRouter.class);
+
+    private final List<ProviderState> providers = new ArrayList<>();
+    private final long windowMillis;
+    private final long defaultLatencyMs;
+    private final int minCalls;
+    private final double openErrorRate;
+    private final long openMillis;
+    private final boolean hedgeEnabled;
+    private final long hedgeDelayMs;
+    private final Counter failoverCounter;
+    private final Counter hedgeCounter;
+
+    public LlmRouter(List<LlmProvider> available,
+                     MeterRegistry meterRegistry,
+                     @Value("${llm.router.providers:deepseek,gemini,fake}") String order,
+                     @Value("${llm.router.window-seconds:300}") long windowSeconds,
+                     @Value("${llm.router.default-latency-ms:8000}") long defaultLatencyMs,
+                     @Value("${llm.router.circuit.min-calls:10}") int minCalls,
+                     @Value("${llm.router.circuit.error-rate:0.5}") double openErrorRate,
+                     @Value("${llm.router.circuit.open-ms:30000}") long openMillis,
+                     @Value("${llm.router.hedge.enabled:false}") boolean hedgeEnabled,
+                     @Value("${llm.router.hedge.delay-ms:0}") long hedgeDelayMs) {
+        this.windowMillis = windowSeconds * 1000;
+        this.defaultLatencyMs = defaultLatencyMs;
+        this.minCalls = minCalls;
+        this.openErrorRate = openErrorRate;
+        this.openMillis = openMillis;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeDelayMs = hedgeDelayMs;
+
+        Map<String, LlmProvider> byName = new LinkedHashMap<>();
+        for (LlmProvider provider : available) {
+            byName.put(provider.name(), provider);
+        }
+        for (String name : order.split(",")) {
+            LlmProvider provider = byName.get(name.trim());
+            if (provider != null && provider.isEnabled()) {
+                providers.add(new ProviderState(provider, providers.size(), meterRegistry));
+            }
+        }
+
+        this.failoverCounter = Counter.builder("llm.router.failovers").register(meterRegistry);
+        this.hedgeCounter = Counter.builder("llm.router.hedges").register(meterRegistry);
+
+        if (providers.isEmpty()) {
+            logger.warn("No LLM provider is configured; AI features will answer with their fallbacks");
+        } else {
+            logger.info("LLM router providers: {} (hedging {})",
+                    providers.stream().map(state -> state.provider.name()).toList(), hedgeEnabled ? "on" : "off");
+        }
+    }
+
+    /**
+     * Sends the completion to the best provider, failing over (and hedging, if enabled) as needed.
+     * The future fails with the last provider's error when every provider failed or was unavailable.
+     */
+    public CompletableFuture<ChatCompletionResponse> complete(ChatCompletionRequest request) {
+        long now = System.currentTimeMillis();
+        List<ProviderState> ranked = new ArrayList<>(providers);
+        Map<ProviderState, Double> costs = new LinkedHashMap<>();
+        for (ProviderState state : ranked) {
+            costs.put(state, state.expectedCost(now));
+        }
+        ranked.sort(Comparator.<ProviderState>comparingDouble(costs::get).thenComparingInt(state -> state.index));
+
+        RoutedCall call = new RoutedCall(request, ranked.iterator());
+        call.start();
+        return call.result;
+    }
+
+    /**
+     * One logical completion and the provider attempts made for it.
+     */
+    private final class RoutedCall {
+        private final ChatCompletionRequest request;
+        private final Iterator<ProviderState> candidates;
+        private final CompletableFuture<ChatCompletionResponse> result = new CompletableFuture<>();
+        private final List<CompletableFuture<ChatCompletionResponse>> attempts = new ArrayList<>();
+        private int running;
+        private Throwable lastError;
+
+        private RoutedCall(ChatCompletionRequest request, Iterator<ProviderState> candidates) {
+            this.request = request;
+            this.candidates = candidates;
+            result.whenComplete((response, error) -> cancelAttempts());
+        }
+
+        private void start() {
+            ProviderState primary = startNext();
+            if (primary != null && hedgeEnabled && candidates.hasNext()) {
+                long delay = hedgeDelayMs > 0 ? hedgeDelayMs : primary.p95(System.currentTimeMillis(), defaultLatencyMs);
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(this::hedge);
+            }
+        }
+
+        private synchronized void hedge() {
+            // Only while the primary alone is still working; a failover already covers the other case
+            if (!result.isDone() && running == 1 && attempts.size() == 1 && startNext() != null) {
+                hedgeCounter.increment();
+                logger.info("Primary LLM provider is slow, hedging with a second provider");
+            }
+        }
+
+        /**
+         * @return the provider started, or null if none was available
+         */
+        private synchronized ProviderState startNext() {
+            long now = System.currentTimeMillis();
+            while (candidates.hasNext()) {
+                ProviderState state = candidates.next();
+                if (!state.tryAcquire(now)) {
+                    continue;
+                }
+                long startNanos = System.nanoTime();
+                CompletableFuture<ChatCompletionResponse> attempt;
+                try {
+                    attempt = state.provider.complete(request);
+                } catch (RuntimeException e) {
+                    attempt = CompletableFuture.failedFuture(e);
+                }
+                attempts.add(attempt);
+                running++;
+                attempt.whenComplete((response, error) -> onAttemptDone(state, startNanos, response, error));
+                return state;
+            }
+            if (running == 0) {
+                result.completeExceptionally(lastError != null ? lastError
+                        : new IOException("No LLM provider is available"));
+            }
+            return null;
+        }
+
+        private void onAttemptDone(ProviderState state, long startNanos, ChatCompletionResponse response, Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                // Lost a hedge race or the caller went away; says nothing about the provider's health
+                state.release();
+            } else {
+                state.record(System.currentTimeMillis(), System.nanoTime() - startNanos, cause == null && valid(response));
+            }
+
+            if (cause == null && valid(response)) {
+                result.complete(response);
+                return;
+            }
+
+            synchronized (this) {
+                running--;
+                if (cause != null && !(cause instanceof CancellationException)) {
+                    lastError = cause;
+                    logger.warn("LLM provider {} failed: {}", state.provider.name(), cause.getMessage());
+                } else if (cause == null) {
+                    lastError = new IOException("LLM provider " + state.provider.name() + " returned no choices");
+                }
+                if (!result.isDone() && running == 0) {
+                    if (candidates.hasNext()) {
+                        failoverCounter.increment();
+                    }
+                    startNext();
+                }
+            }
+        }
+
+        private synchronized void cancelAttempts() {
+            for (CompletableFuture<ChatCompletionResponse> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    private static boolean valid(ChatCompletionResponse response) {
+        return response != null && response.getChoices() != null && !response.getChoices().isEmpty()
+                && response.getChoices().get(0).getMessage() != null;
+    }
+
+    private enum Circuit { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Rolling call statistics and circuit breaker for one provider.
+     */
+    private final class ProviderState {
+        private static final int MAX_SAMPLES = 256;
+
+        private final LlmProvider provider;
+        private final int index;
+        private final long[] sampleTimes = new long[MAX_SAMPLES];
+        private final long[] sampleLatencies = new long[MAX_SAMPLES];
+        private final boolean[] sampleFailures = new boolean[MAX_SAMPLES];
+        private int nextSample;
+        private Circuit circuit = Circuit.CLOSED;
+        private long openedAt;
+        private boolean trialInFlight;
+        private final Counter successCounter;
+        private final Counter failureCounter;
+        private final Timer latencyTimer;
+
+        private ProviderState(LlmProvider provider, int index, MeterRegistry meterRegistry) {
+            this.provider = provider;
+            this.index = index;
+            this.successCounter = Counter.builder("llm.provider.requests")
+                    .tag("provider", provider.name()).tag("outcome", "success").register(meterRegistry);
+            this.failureCounter = Counter.builder("llm.provider.requests")
+                    .tag("provider", provider.name()).tag("outcome", "failure").register(meterRegistry);
+            this.latencyTimer = Timer.builder("llm.provider.latency")
+                    .tag("provider", provider.name()).register(meterRegistry);
+            Gauge.builder("llm.provider.circuit_open", this, state -> state.isOpen() ? 1 : 0)
+                    .tag("provider", provider.name()).register(meterRegistry);
+        }
+
+        /**
+         * @return true if the breaker lets a call through now; a half-open breaker admits one trial call
+         */
+        private synchronized boolean tryAcquire(long now) {
+            if (circuit == Circuit.OPEN && now - openedAt >= openMillis) {
+                circuit = Circuit.HALF_OPEN;
+                trialInFlight = false;
+            }
+            if (circuit == Circuit.OPEN || (circuit == Circuit.HALF_OPEN && trialInFlight)) {
+                return false;
+            }
+            if (circuit == Circuit.HALF_OPEN) {
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        // A cancelled trial call neither closes nor reopens the breaker
+        private synchronized void release() {
+            trialInFlight = false;
+        }
+
+        private synchronized void record(long now, long latencyNanos, boolean success) {
+            (success ? successCounter : failureCounter).increment();
+            latencyTimer.record(latencyNanos, TimeUnit.NANOSECONDS);
+
+            sampleTimes[nextSample] = now;
+            sampleLatencies[nextSample] = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            sampleFailures[nextSample] = !success;
+            nextSample = (nextSample + 1) % MAX_SAMPLES;
+
+            if (circuit == Circuit.HALF_OPEN) {
+                trialInFlight = false;
+                if (success) {
+                    circuit = Circuit.CLOSED;
+                    Arrays.fill(sampleTimes, 0); // Start the error rate afresh
+                    logger.info("LLM provider {} recovered, circuit closed", provider.name());
+                } else {
+                    open(now);
+                }
+                return;
+            }
+
+            int calls = 0;
+            int failures = 0;
+            for (int i = 0; i < MAX_SAMPLES; i++) {
+                if (inWindow(i, now)) {
+                    calls++;
+                    if (sampleFailures[i]) failures++;
+                }
+            }
+            if (circuit == Circuit.CLOSED && calls >= minCalls && (double) failures / calls >= openErrorRate) {
+                open(now);
+            }
+        }
+
+        private void open(long now) {
+            circuit = Circuit.OPEN;
+            openedAt = now;
+            logger.warn("LLM provider {} is failing, circuit open for {} ms", provider.name(), openMillis);
+        }
+
+        private synchronized boolean isOpen() {
+            return circuit == Circuit.OPEN;
+        }
+
+        /**
+         * @return p95 latency over the window divided by the success rate, or the default latency
+         *         when there are too few recent calls to judge
+         */
+        private synchronized double expectedCost(long now) {
+            int calls = 0;
+            int failures = 0;
+            for (int i = 0; i < MAX_SAMPLES; i++) {
+                if (inWindow(i, now)) {
+                    calls++;
+                    if (sampleFailures[i]) failures++;
+                }
+            }
+            if (calls < minCalls) {
+                return defaultLatencyMs;
+            }
+            double successRate = Math.max(0.05, 1.0 - (double) failures / calls);
+            return p95(now, defaultLatencyMs) / successRate;
+        }
+
+        private synchronized long p95(long now, long fallback) {
+            long[] latencies = new long[MAX_SAMPLES];
+            int count = 0;
+            for (int i = 0; i < MAX_SAMPLES; i++) {
+                if (inWindow(i, now) && !sampleFailures[i]) {
+                    latencies[count++] = sampleLatencies[i];
+                }
+            }
+            if (count == 0) {
+                return fallback;
+            }
+            Arrays.sort(latencies, 0, count);
+            return latencies[Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1)];
+        }
+
+        private boolean inWindow(int i, long now) {
+            return sampleTimes[i] != 0 && now - sampleTimes[i] <= windowMillis;
+        }
+    }
+}
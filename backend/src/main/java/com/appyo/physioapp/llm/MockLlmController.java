@@ -0,0 +1,276 @@
+package com.appyo.physioapp.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MockLlmController
+ *
+ * DeepSeek-compatible POST /mock-llm/chat/completions for offline load tests, active only with the
+ * mock-llm profile (see application-mock-llm.properties, which points deepseek.api.url here).
+ * It implements the part of the contract {@link LlmClient} uses: the JSON answer with usage and
+ * finish_reason, and the SSE stream of chat.completion.chunk events ending in "data: [DONE]".
+ *
+ * Answers are never computed, only timed:
+ * - time to first token is log-normal with mock-llm.latency.median-ms and mock-llm.latency.p99-ms
+ * - the answer is then produced at mock-llm.tokens-per-second (about 4 characters per token);
+ *   a non-streaming answer is sent once all of it would have been generated
+ * - mock-llm.faults.error-rate answers HTTP 500, mock-llm.faults.rate-limit-rate HTTP 429 and
+ *   mock-llm.faults.hang-rate never answers (the client's read timeout fires)
+ * - requests in JSON mode or asking for exercises get the canned plan (mock-llm.plan-payload),
+ *   everything else the canned chat reply (mock-llm.chat-payload)
+ *
+ * Waiting happens on a scheduler, never on a servlet thread, so the mock adds almost no load to
+ * the application it runs in and throughput numbers stay comparable.
+ */
+@RestController
+@Profile("mock-llm")
+@RequestMapping("/mock-llm")
+public class MockLlmController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MockLlmController.class);
+
+    private static final double Z_99 = 2.3263; // 99th percentile of the standard normal distribution
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final long STREAM_TICK_MS = 50;
+    private static final long HANG_MS = 10 * 60 * 1000;
+
+    private final ObjectMapper objectMapper;
+    private final double medianMs;
+    private final double sigma;
+    private final double tokensPerSecond;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final double hangRate;
+    private final String planPayload;
+    private final String chatPayload;
+    private final ScheduledExecutorService scheduler;
+
+    public MockLlmController(ObjectMapper objectMapper,
+                             @Value("${mock-llm.latency.median-ms:800}") double medianMs,
+                             @Value("${mock-llm.latency.p99-ms:4000}") double p99Ms,
+                             @Value("${mock-llm.tokens-per-second:60}") double tokensPerSecond,
+                             @Value("${mock-llm.faults.error-rate:0}") double errorRate,
+                             @Value("${mock-llm.faults.rate-limit-rate:0}") double rateLimitRate,
+                             @Value("${mock-llm.faults.hang-rate:0}") double hangRate,
+                             @Value("${mock-llm.plan-payload:classpath:mock-llm/plan.json}") Resource planPayload,
+                             @Value("${mock-llm.chat-payload:classpath:mock-llm/chat.txt}") Resource chatPayload,
+                             @Value("${mock-llm.scheduler-threads:2}") int schedulerThreads) throws IOException {
+        this.objectMapper = objectMapper;
+        this.medianMs = medianMs;
+        this.sigma = p99Ms > medianMs ? Math.log(p99Ms / medianMs) / Z_99 : 0;
+        this.tokensPerSecond = tokensPerSecond;
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+        this.hangRate = hangRate;
+        this.planPayload = planPayload.getContentAsString(StandardCharsets.UTF_8);
+        this.chatPayload = chatPayload.getContentAsString(StandardCharsets.UTF_8);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(schedulerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "mock-llm-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.warn("Mock LLM enabled: median {} ms, p99 {} ms, {} tokens/s, faults {}/{}/{} (500/429/hang)",
+                medianMs, p99Ms, tokensPerSecond, errorRate, rateLimitRate, hangRate);
+    }
+
+    @PostMapping("/chat/completions")
+    public ResponseEntity<ResponseBodyEmitter> completions(@RequestBody JsonNode request) {
+        boolean stream = request.path("stream").asBoolean(false);
+        String model = request.path("model").asText("deepseek-chat");
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(HANG_MS);
+        emitter.onTimeout(emitter::complete);
+
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < hangRate) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(emitter);
+        }
+        long firstTokenMs = sampleLatencyMs();
+        if (roll < hangRate + errorRate) {
+            sendLater(emitter, error("Injected server error", "server_error"), firstTokenMs);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.APPLICATION_JSON).body(emitter);
+        }
+        if (roll < hangRate + errorRate + rateLimitRate) {
+            sendLater(emitter, error("Injected rate limit", "rate_limit_exceeded"), 0);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .contentType(MediaType.APPLICATION_JSON).body(emitter);
+        }
+
+        String reply = wantsPlan(request) ? planPayload : chatPayload;
+        int promptTokens = estimateTokens(request.path("messages").toString());
+        String id = "mock-" + UUID.randomUUID();
+        if (stream) {
+            streamLater(emitter, id, model, tokenize(reply), firstTokenMs);
+            return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+        }
+        long generationMs = tokensPerSecond > 0 ? (long) (estimateTokens(reply) * 1000 / tokensPerSecond) : 0;
+        sendLater(emitter, completion(id, model, reply, promptTokens), firstTokenMs + generationMs);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(emitter);
+    }
+
+    private void sendLater(ResponseBodyEmitter emitter, String body, long delayMs) {
+        scheduler.schedule(() -> {
+            try {
+                emitter.send(body);
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // The client went away
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void streamLater(ResponseBodyEmitter emitter, String id, String model, List<String> tokens, long firstTokenMs) {
+        double tokensPerTick = tokensPerSecond > 0 ? tokensPerSecond * STREAM_TICK_MS / 1000.0 : tokens.size();
+        Runnable tick = new Runnable() {
+            private int next;
+            private double credit = 1; // The first token goes out right after the first-token latency
+
+            @Override
+            public void run() {
+                try {
+                    int count = (int) credit;
+                    credit = credit - count + tokensPerTick;
+                    StringBuilder content = new StringBuilder();
+                    for (int i = 0; i < count && next < tokens.size(); i++) {
+                        content.append(tokens.get(next++));
+                    }
+                    if (content.length() > 0) {
+                        emitter.send("data: " + chunk(id, model, content.toString(), null) + "\n\n");
+                    }
+                    if (next >= tokens.size()) {
+                        emitter.send("data: " + chunk(id, model, null, "stop") + "\n\n");
+                        emitter.send("data: [DONE]\n\n");
+                        emitter.complete();
+                        return;
+                    }
+                    scheduler.schedule(this, STREAM_TICK_MS, TimeUnit.MILLISECONDS);
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away; stop generating like the real API does
+                }
+            }
+        };
+        scheduler.schedule(tick, firstTokenMs, TimeUnit.MILLISECONDS);
+    }
+
+    private long sampleLatencyMs() {
+        return Math.round(medianMs * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private static boolean wantsPlan(JsonNode request) {
+        if ("json_object".equals(request.path("response_format").path("type").asText())) {
+            return true;
+        }
+        for (JsonNode message : request.path("messages")) {
+            if (message.path("content").asText().toLowerCase(Locale.ROOT).contains("exercise plan")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int estimateTokens(String text) {
+        return Math.max(1, text.length() / CHARS_PER_TOKEN);
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += CHARS_PER_TOKEN) {
+            tokens.add(text.substring(i, Math.min(text.length(), i + CHARS_PER_TOKEN)));
+        }
+        return tokens;
+    }
+
+    private String completion(String id, String model, String reply, int promptTokens) {
+        int completionTokens = estimateTokens(reply);
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("role", "assistant");
+        message.put("content", reply);
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("message", message);
+        choice.put("finish_reason", "stop");
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", id);
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", model);
+        response.put("choices", List.of(choice));
+        response.put("usage", usage);
+        return toJson(response);
+    }
+
+    private String chunk(String id, String model, String content, String finishReason) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        if (content != null) {
+            delta.put("content", content);
+        }
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", System.currentTimeMillis() / 1000);
+        chunk.put("model", model);
+        chunk.put("choices", List.of(choice));
+        return toJson(chunk);
+    }
+
+    private String error(String message, String type) {
+        return toJson(Map.of("error", Map.of("message", message, "type", type)));
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,135 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PromptBudget
+ *
+ * Per-endpoint token ceilings for outgoing LLM requests. Generation time grows with the number
+ * of output tokens, so capping max_tokens caps the slowest answers as well as their cost.
+ *
+ * Ceilings are read from llm.budget.{endpoint}.*, with the defaults below when unset:
+ * - max-input-tokens: estimated prompt tokens ({@link TokenEstimator}); a larger prompt is
+ *   refused with {@link PromptTooLargeException} before any call is made (0 = no limit)
+ * - max-output-tokens: sent as max_tokens; a caller's smaller value is kept
+ * - stop: comma-separated stop sequences sent with every request of the endpoint
+ *
+ * An answer that ends with finish_reason "length" hit the output ceiling and was cut off; callers
+ * report it through {@link #recordFinish(String, String)}.
+ *
+ * Metrics:
+ * - llm.budget.input_tokens (summary, tag endpoint): estimated prompt tokens per request
+ * - llm.budget.overruns (counter, tags endpoint, limit=input|output): requests refused for their
+ *   prompt size, and answers cut off at max_tokens
+ */
+@Component
+public class PromptBudget {
+
+    // Default ceilings per endpoint: {max input tokens, max output tokens}
+    private static final Map<String, int[]> DEFAULTS = Map.of(
+            "chat", new int[]{4000, 800},
+            "chat-stream", new int[]{4000, 800},
+            "recommendations", new int[]{2000, 1500},
+            "pregeneration", new int[]{2000, 1500},
+            "batch", new int[]{2000, 1500}
+    );
+    private static final int[] FALLBACK = {4000, 1000};
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    public PromptBudget(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Checks the request's estimated prompt size and sets max_tokens and stop sequences on it.
+     *
+     * @return the same request, for chaining
+     * @throws PromptTooLargeException if the prompt is over the endpoint's input ceiling
+     */
+    public ChatCompletionRequest apply(String endpoint, ChatCompletionRequest request) {
+        Budget budget = budgets.computeIfAbsent(endpoint, this::createBudget);
+
+        int inputTokens = TokenEstimator.estimate(request.getMessages());
+        budget.inputTokens.record(inputTokens);
+        if (budget.maxInputTokens > 0 && inputTokens > budget.maxInputTokens) {
+            overrun(endpoint, "input");
+            throw new PromptTooLargeException(endpoint, inputTokens, budget.maxInputTokens);
+        }
+
+        if (budget.maxOutputTokens > 0
+                && (request.getMaxTokens() == null || request.getMaxTokens() > budget.maxOutputTokens)) {
+            request.setMaxTokens(budget.maxOutputTokens);
+        }
+        if (!budget.stop.isEmpty() && request.getStop() == null) {
+            request.setStop(budget.stop);
+        }
+        return request;
+    }
+
+    /**
+     * Records an answer that was cut off by its max_tokens.
+     *
+     * @param finishReason the provider's finish_reason, may be null
+     */
+    public void recordFinish(String endpoint, String finishReason) {
+        if ("length".equals(finishReason)) {
+            overrun(endpoint, "output");
+        }
+    }
+
+    private void overrun(String endpoint, String limit) {
+        meterRegistry.counter("llm.budget.overruns", "endpoint", endpoint, "limit", limit).increment();
+    }
+
+    private Budget createBudget(String endpoint) {
+        int[] defaults = DEFAULTS.getOrDefault(endpoint, FALLBACK);
+        String prefix = "llm.budget." + endpoint + ".";
+        int maxInput = environment.getProperty(prefix + "max-input-tokens", Integer.class, defaults[0]);
+        int maxOutput = environment.getProperty(prefix + "max-output-tokens", Integer.class, defaults[1]);
+        String[] stop = environment.getProperty(prefix + "stop", String[].class, new String[0]);
+
+        DistributionSummary inputTokens = DistributionSummary.builder("llm.budget.input_tokens")
+                .baseUnit("tokens")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        // OpenAI-compatible APIs accept at most 4 stop sequences
+        List<String> stopSequences = Arrays.stream(stop).filter(s -> !s.isEmpty()).limit(4).toList();
+        return new Budget(maxInput, maxOutput, stopSequences, inputTokens);
+    }
+
+    /**
+     * Thrown when a prompt is estimated to be larger than its endpoint allows.
+     */
+    public static class PromptTooLargeException extends RuntimeException {
+        public PromptTooLargeException(String endpoint, int estimatedTokens, int maxTokens) {
+            super("Prompt for " + endpoint + " is about " + estimatedTokens + " tokens, limit is " + maxTokens);
+        }
+    }
+
+    private static final class Budget {
+        private final int maxInputTokens;
+        private final int maxOutputTokens;
+        private final List<String> stop;
+        private final DistributionSummary inputTokens;
+
+        private Budget(int maxInputTokens, int maxOutputTokens, List<String> stop, DistributionSummary inputTokens) {
+            this.maxInputTokens = maxInputTokens;
+            this.maxOutputTokens = maxOutputTokens;
+            this.stop = stop;
+            this.inputTokens = inputTokens;
+        }
+    }
+}
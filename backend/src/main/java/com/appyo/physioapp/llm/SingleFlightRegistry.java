@@ -0,0 +1,157 @@
+package com.appyo.physioapp.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * SingleFlightRegistry
+ *
+ * Coalesces identical LLM requests that are in flight at the same time. The first caller for a key
+ * (the leader) starts the upstream call; callers arriving with the same key before it finishes join
+ * it and receive the same result, so a double-clicked "Generate" or a whole class asking for the
+ * same session costs one DeepSeek call instead of many.
+ *
+ * Every caller gets its own future. A caller that is cancelled or gives up after
+ * llm.single-flight.wait-timeout-ms only detaches itself; the upstream call is cancelled once the
+ * last waiter has left. The entry is removed as soon as the upstream call finishes, so results
+ * are never reused after the fact (that is the plan cache's job).
+ *
+ * Keys must be canonical: callers are responsible for normalizing whatever the prompt is built from
+ * and for prefixing the endpoint so different request types never share a flight.
+ *
+ * Metrics:
+ * - llm.single_flight.requests (counter, tag role=leader|joined)
+ * - llm.single_flight.abandoned (counter): upstream calls cancelled because every waiter left
+ * - llm.single_flight.in_flight (gauge): distinct requests currently in flight
+ */
+@Component
+public class SingleFlightRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlightRegistry.class);
+
+    private final Map<String, Flight<?>> flights = new ConcurrentHashMap<>();
+    private final long waitTimeoutMs;
+    private final Counter leaderCounter;
+    private final Counter joinedCounter;
+    private final Counter abandonedCounter;
+
+    public SingleFlightRegistry(MeterRegistry meterRegistry,
+                                @Value("${llm.single-flight.wait-timeout-ms:60000}") long waitTimeoutMs) {
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.leaderCounter = Counter.builder("llm.single_flight.requests").tag("role", "leader").register(meterRegistry);
+        this.joinedCounter = Counter.builder("llm.single_flight.requests").tag("role", "joined").register(meterRegistry);
+        this.abandonedCounter = Counter.builder("llm.single_flight.abandoned").register(meterRegistry);
+        Gauge.builder("llm.single_flight.in_flight", flights, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns a future for the result of the request identified by key, starting it with the loader
+     * only if no identical request is already in flight.
+     *
+     * The loader runs at most once per flight, on the leader's thread. It should return the upstream
+     * future itself (not a dependent stage) so cancelling it cancels the call.
+     *
+     * @return a future owned by this caller; cancelling it never affects the other waiters
+     */
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> join(String key, Supplier<CompletableFuture<V>> loader) {
+        while (true) {
+            Flight<V> created = new Flight<>();
+            Flight<V> flight = (Flight<V>) flights.putIfAbsent(key, created);
+            if (flight == null) {
+                leaderCounter.increment();
+                start(key, created, loader);
+                return created.attach(key);
+            }
+            CompletableFuture<V> waiter = flight.attach(key);
+            if (waiter != null) {
+                joinedCounter.increment();
+                logger.debug("Joined in-flight LLM request {}", key);
+                return waiter;
+            }
+            // The flight was abandoned between lookup and attach; it is being removed, so retry
+            flights.remove(key, flight);
+        }
+    }
+
+    private <V> void start(String key, Flight<V> flight, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> upstream;
+        try {
+            upstream = loader.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        flight.upstream = upstream;
+        upstream.whenComplete((result, error) -> {
+            flights.remove(key, flight);
+            if (error != null) {
+                flight.result.completeExceptionally(error);
+            } else {
+                flight.result.complete(result);
+            }
+        });
+    }
+
+    private void abandon(String key, Flight<?> flight) {
+        flights.remove(key, flight);
+        CompletableFuture<?> upstream = flight.upstream;
+        if (upstream != null && upstream.cancel(true)) {
+            abandonedCounter.increment();
+            logger.debug("Cancelled LLM request {} after every waiter left", key);
+        }
+    }
+
+    private final class Flight<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private volatile CompletableFuture<V> upstream;
+        private int waiters;
+        private boolean closed;
+
+        /**
+         * @return a new waiter future, or null if the flight has already been abandoned
+         */
+        private synchronized CompletableFuture<V> attach(String key) {
+            if (closed) {
+                return null;
+            }
+            waiters++;
+            CompletableFuture<V> waiter = new CompletableFuture<>();
+            result.whenComplete((value, error) -> {
+                if (error != null) {
+                    waiter.completeExceptionally(error);
+                } else {
+                    waiter.complete(value);
+                }
+            });
+            waiter.orTimeout(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            waiter.whenComplete((value, error) -> {
+                // Finishing before the shared result means this caller was cancelled or timed out
+                if (!result.isDone()) {
+                    detach(key);
+                }
+            });
+            return waiter;
+        }
+
+        private void detach(String key) {
+            synchronized (this) {
+                if (--waiters > 0 || result.isDone()) {
+                    return;
+                }
+                closed = true;
+            }
+            abandon(key, this);
+        }
+    }
+}
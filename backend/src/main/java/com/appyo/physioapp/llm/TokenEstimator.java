@@ -0,0 +1,41 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.Message;
+
+import java.util.List;
+
+/**
+ * TokenEstimator
+ *
+ * Cheap, tokenizer-free estimate of how many tokens a prompt will cost, for budgeting before a
+ * call. English text averages about 4 characters per token with the DeepSeek and Gemini
+ * tokenizers; each chat message adds a few tokens of role and framing. Estimates round up so a
+ * budget is rarely overrun; the exact count comes back in the response's usage.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    public static int estimate(Message message) {
+        return TOKENS_PER_MESSAGE + estimate(message.getContent());
+    }
+
+    public static int estimate(List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += estimate(message);
+        }
+        return tokens;
+    }
+}
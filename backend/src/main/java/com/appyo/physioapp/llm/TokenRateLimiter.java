@@ -0,0 +1,65 @@
+package com.appyo.physioapp.llm;
+
+/**
+ * TokenRateLimiter
+ *
+ * Token bucket that keeps a caller under a tokens-per-minute budget for LLM calls. The bucket holds
+ * up to one minute of tokens and refills continuously; {@link #acquire(int)} blocks until enough
+ * tokens are available. A request larger than the whole budget is let through once the bucket is
+ * full and leaves it in debt, so it can never block forever.
+ *
+ * Callers charge an estimate before the call; there is no refund for calls that used less.
+ */
+public class TokenRateLimiter {
+
+    private final double capacity;
+    private final double tokensPerMs;
+    private double available;
+    private long lastRefill;
+
+    /**
+     * @param tokensPerMinute the budget; 0 or less disables the limit
+     */
+    public TokenRateLimiter(long tokensPerMinute) {
+        this.capacity = Math.max(0, tokensPerMinute);
+        this.tokensPerMs = capacity / 60_000.0;
+        this.available = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes the tokens, waiting for the bucket to refill if needed.
+     */
+    public void acquire(int tokens) throws InterruptedException {
+        if (capacity == 0) {
+            return;
+        }
+        while (true) {
+            long waitMs;
+            synchronized (this) {
+                refill();
+                double needed = Math.min(tokens, capacity);
+                if (available >= needed) {
+                    available -= tokens;
+                    return;
+                }
+                waitMs = (long) Math.ceil((needed - available) / tokensPerMs);
+            }
+            Thread.sleep(Math.max(1, waitMs));
+        }
+    }
+
+    /**
+     * @return tokens that can be taken right now without waiting (negative while in debt)
+     */
+    public synchronized double available() {
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefill) / 1_000_000.0 * tokensPerMs);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,181 @@
+package com.appyo.physioapp.user;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * UserContext
+ *
+ * Immutable snapshot of everything the profile, validation and recommendation paths need about a
+ * user: profile columns, equipment access and the injuries that are not yet recovered. Assembled by
+ * {@link UserContextService} in one query and shared between requests through its cache.
+ *
+ * @author PhysioApp Team
+ */
+public final class UserContext {
+
+    private final UUID userId;
+    private final String username;
+    private final String email;
+    private final String name;
+    private final String gender;
+    private final Integer age;
+    private final String phone;
+    private final Double height;
+    private final Double weight;
+    private final String chronicDiseases;
+    private final String injuryHistory;
+    private final String fitnessGoal;
+    private final String equipmentAccess;
+    private final String role;
+    private final List<Injury> activeInjuries;
+
+    UserContext(UUID userId, String username, String email, String name, String gender, Integer age,
+                String phone, Double height, Double weight, String chronicDiseases, String injuryHistory,
+                String fitnessGoal, String equipmentAccess, String role, List<Injury> activeInjuries) {
+        this.userId = userId;
+        this.username = username;
+        this.email = email;
+        this.name = name;
+        this.gender = gender;
+        this.age = age;
+        this.phone = phone;
+        this.height = height;
+        this.weight = weight;
+        this.chronicDiseases = chronicDiseases;
+        this.injuryHistory = injuryHistory;
+        this.fitnessGoal = fitnessGoal;
+        this.equipmentAccess = equipmentAccess;
+        this.role = role;
+        this.activeInjuries = List.copyOf(activeInjuries);
+    }
+
+    UserContext withActiveInjuries(List<Injury> injuries) {
+        return new UserContext(userId, username, email, name, gender, age, phone, height, weight, chronicDiseases,
+                injuryHistory, fitnessGoal, equipmentAccess, role, injuries);
+    }
+
+    /**
+     * Returns a copy with the given stepper fields replaced; null leaves a field unchanged.
+     */
+    UserContext withStepperFields(String fitnessGoal, String equipmentAccess, String injuryHistory) {
+        return new UserContext(userId, username, email, name, gender, age, phone, height, weight, chronicDiseases,
+                injuryHistory != null ? injuryHistory : this.injuryHistory,
+                fitnessGoal != null ? fitnessGoal : this.fitnessGoal,
+                equipmentAccess != null ? equipmentAccess : this.equipmentAccess,
+                role, activeInjuries);
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public Double getHeight() {
+        return height;
+    }
+
+    public Double getWeight() {
+        return weight;
+    }
+
+    public String getChronicDiseases() {
+        return chronicDiseases;
+    }
+
+    public String getInjuryHistory() {
+        return injuryHistory;
+    }
+
+    public String getFitnessGoal() {
+        return fitnessGoal;
+    }
+
+    public String getEquipmentAccess() {
+        return equipmentAccess;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public List<Injury> getActiveInjuries() {
+        return activeInjuries;
+    }
+
+    /**
+     * A row of the injury table whose recovery status is not "Recovered".
+     */
+    public static final class Injury {
+
+        private final String injuryType;
+        private final String injuryArea;
+        private final String severity;
+        private final String recoveryStatus;
+        private final String muscleGroupsToAvoid;
+        private final String goalsForInjury;
+        private final String notes;
+
+        Injury(String injuryType, String injuryArea, String severity, String recoveryStatus,
+               String muscleGroupsToAvoid, String goalsForInjury, String notes) {
+            this.injuryType = injuryType;
+            this.injuryArea = injuryArea;
+            this.severity = severity;
+            this.recoveryStatus = recoveryStatus;
+            this.muscleGroupsToAvoid = muscleGroupsToAvoid;
+            this.goalsForInjury = goalsForInjury;
+            this.notes = notes;
+        }
+
+        public String getInjuryType() {
+            return injuryType;
+        }
+
+        public String getInjuryArea() {
+            return injuryArea;
+        }
+
+        public String getSeverity() {
+            return severity;
+        }
+
+        public String getRecoveryStatus() {
+            return recoveryStatus;
+        }
+
+        public String getMuscleGroupsToAvoid() {
+            return muscleGroupsToAvoid;
+        }
+
+        public String getGoalsForInjury() {
+            return goalsForInjury;
+        }
+
+        public String getNotes() {
+            return notes;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.appyo.physioapp.user;
+
+import com.appyo.physioapp.cache.BoundedExpiringCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * UserContextService
+ *
+ * Single read path for a user's profile, equipment and active injuries. One LEFT JOIN of "User"
+ * and injury builds a {@link UserContext}, which is cached per user for
+ * user.context-cache.ttl-seconds. Writers call {@link #invalidate(UUID)} after changing the
+ * profile; stepper fields still waiting in {@link UserWriteBehindBuffer} are overlaid on load,
+ * so a cached context never hides an accepted save.
+ *
+ * @author PhysioApp Team
+ */
+@Service
+public class UserContextService {
+
+    private static final String USER_CONTEXT_SQL = """
+        SELECT u.user_id, u.username, u.email, u.name, u.gender, u.age, u.phone, u.height, u.weight,
+               u.chronic_diseases, u.injury_history, u.fitness_goal, u.equipment_access, u.role,
+               i.injury_type, i.injury_area, i.severity, i.recovery_status,
+               i.muscle_groups_to_avoid, i.goals_for_injury, i.notes
+        FROM "User" u
+        LEFT JOIN injury i
+               ON i.user_id = u.user_id
+              AND (i.recovery_status IS NULL OR LOWER(i.recovery_status) <> 'recovered')
+        WHERE u.user_id = ?
+        ORDER BY i.updated_at DESC NULLS LAST
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserWriteBehindBuffer writeBehind;
+    private final BoundedExpiringCache<UUID, UserContext> cache;
+
+    public UserContextService(JdbcTemplate jdbcTemplate, UserWriteBehindBuffer writeBehind,
+                              MeterRegistry meterRegistry,
+                              @Value("${user.context-cache.max-size:5000}") int maxSize,
+                              @Value("${user.context-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeBehind = writeBehind;
+        // A flushed stepper save may have been read from the old row while it was being written
+        writeBehind.addFlushListener(this::invalidate);
+        this.cache = new BoundedExpiringCache<>(maxSize, ttlSeconds * 1000);
+        this.cache.registerMetrics(meterRegistry, "user-context");
+    }
+
+    /**
+     * @return the user's context, or null if the user does not exist
+     */
+    public UserContext get(UUID userId) {
+        if (userId == null) {
+            return null;
+        }
+        UserContext context = cache.get(userId);
+        if (context == null) {
+            context = load(userId);
+            if (context != null) {
+                cache.put(userId, context);
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Drops the cached context after the user's profile, stepper fields or injuries changed.
+     */
+    public void invalidate(UUID userId) {
+        if (userId != null) {
+            cache.invalidate(userId);
+        }
+    }
+
+    @Scheduled(fixedRate = 60000) // Drop expired entries every minute
+    public void purgeExpired() {
+        cache.purgeExpired();
+    }
+
+    private UserContext load(UUID userId) {
+        List<UserContext> holder = new ArrayList<>(1);
+        List<UserContext.Injury> injuries = new ArrayList<>();
+
+        jdbcTemplate.query(USER_CONTEXT_SQL, (ResultSet rs) -> {
+            if (holder.isEmpty()) {
+                holder.add(mapUser(rs));
+            }
+            if (rs.getString("injury_type") != null || rs.getString("injury_area") != null) {
+                injuries.add(mapInjury(rs));
+            }
+        }, userId);
+
+        if (holder.isEmpty()) {
+            return null;
+        }
+        return writeBehind.applyPendingProfile(userId, holder.get(0).withActiveInjuries(injuries));
+    }
+
+    private static UserContext mapUser(ResultSet rs) throws SQLException {
+        return new UserContext(
+                rs.getObject("user_id", UUID.class),
+                rs.getString("username"),
+                rs.getString("email"),
+                rs.getString("name"),
+                rs.getString("gender"),
+                rs.getObject("age", Integer.class),
+                rs.getString("phone"),
+                rs.getObject("height", Double.class),
+                rs.getObject("weight", Double.class),
+                rs.getString("chronic_diseases"),
+                rs.getString("injury_history"),
+                rs.getString("fitness_goal"),
+                rs.getString("equipment_access"),
+                rs.getString("role"),
+                List.of());
+    }
+
+    private static UserContext.Injury mapInjury(ResultSet rs) throws SQLException {
+        return new UserContext.Injury(
+                rs.getString("injury_type"),
+                rs.getString("injury_area"),
+                rs.getString("severity"),
+                rs.getString("recovery_status"),
+                rs.getString("muscle_groups_to_avoid"),
+                rs.getString("goals_for_injury"),
+                rs.getString("notes"));
+    }
+}
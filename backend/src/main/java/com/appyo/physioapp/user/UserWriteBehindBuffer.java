@@ -0,0 +1,198 @@
+package com.appyo.physioapp.user;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * UserWriteBehindBuffer
+ *
+ * Coalesces low-value column updates on the "User" row (last login time and the plan stepper
+ * fields) per user and writes them in batched partial UPDATEs on a short interval and at shutdown.
+ * Login and the stepper save no longer pay for a full-row UPDATE inside the request.
+ *
+ * Several updates for the same user between flushes collapse into one; later values win.
+ * A null stepper field means "not provided" and leaves the column unchanged.
+ *
+ * Readers that need the profile fields immediately should call {@link #applyPendingProfile(UUID, UserContext)}
+ * so a save that has not been flushed yet is still visible. Updates stay in the buffer until the
+ * flush that writes them has committed, and flush listeners (the user context cache) are told which
+ * users' stepper fields were written, so no reader sees the old row without the buffered values.
+ *
+ * Buffered entries are never changed in place: every update replaces the user's entry with a new
+ * copy, so a flush can tell whether the entry it wrote is still the latest one.
+ */
+@Component
+public class UserWriteBehindBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserWriteBehindBuffer.class);
+
+    private static final String UPDATE_LAST_LOGIN_SQL =
+        "UPDATE \"User\" SET last_login = ? WHERE user_id = ?";
+
+    private static final String UPDATE_STEPPER_SQL = """
+        UPDATE "User"
+        SET fitness_goal = COALESCE(?, fitness_goal),
+            equipment_access = COALESCE(?, equipment_access),
+            injury_history = COALESCE(?, injury_history)
+        WHERE user_id = ?
+        """;
+
+    private final Map<UUID, PendingUpdate> pending = new ConcurrentHashMap<>();
+    private final List<Consumer<UUID>> flushListeners = new CopyOnWriteArrayList<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public UserWriteBehindBuffer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        Gauge.builder("user.write_behind.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Registers a callback that receives each user whose stepper fields were just committed.
+     */
+    public void addFlushListener(Consumer<UUID> listener) {
+        flushListeners.add(listener);
+    }
+
+    public void recordLogin(UUID userId, LocalDateTime loginTime) {
+        pending.compute(userId, (id, update) -> {
+            PendingUpdate next = update != null ? update.copy() : new PendingUpdate();
+            next.lastLogin = loginTime;
+            return next;
+        });
+    }
+
+    public void recordStepperFields(UUID userId, String fitnessGoal, String equipmentAccess, String injuryHistory) {
+        pending.compute(userId, (id, update) -> {
+            PendingUpdate next = update != null ? update.copy() : new PendingUpdate();
+            if (fitnessGoal != null) next.fitnessGoal = fitnessGoal;
+            if (equipmentAccess != null) next.equipmentAccess = equipmentAccess;
+            if (injuryHistory != null) next.injuryHistory = injuryHistory;
+            return next;
+        });
+    }
+
+    /**
+     * Returns the context with any unflushed stepper fields applied so reads see the latest values.
+     */
+    public UserContext applyPendingProfile(UUID userId, UserContext context) {
+        PendingUpdate update = pending.get(userId);
+        if (update == null) {
+            return context;
+        }
+        return context.withStepperFields(update.fitnessGoal, update.equipmentAccess, update.injuryHistory);
+    }
+
+    /**
+     * Copies any unflushed stepper fields onto a freshly loaded entity and drops them from the buffer.
+     * Used before a full-row save so a stale buffered value cannot overwrite the newer row later.
+     */
+    public void drainPendingProfile(UUID userId, User user) {
+        pending.computeIfPresent(userId, (id, update) -> {
+            update.applyTo(user);
+            if (update.lastLogin == null) {
+                return null;
+            }
+            PendingUpdate loginOnly = new PendingUpdate();
+            loginOnly.lastLogin = update.lastLogin;
+            return loginOnly;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${user.write-behind.flush-interval-ms:2000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Snapshot the entries but leave them visible to readers until the UPDATEs have committed
+        Map<UUID, PendingUpdate> batch = new HashMap<>(pending);
+
+        List<Object[]> lastLoginArgs = new ArrayList<>();
+        List<Object[]> stepperArgs = new ArrayList<>();
+        batch.forEach((userId, update) -> {
+            if (update.lastLogin != null) {
+                lastLoginArgs.add(new Object[]{Timestamp.valueOf(update.lastLogin), userId});
+            }
+            if (update.hasStepperFields()) {
+                stepperArgs.add(new Object[]{update.fitnessGoal, update.equipmentAccess, update.injuryHistory, userId});
+            }
+        });
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!lastLoginArgs.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE_LAST_LOGIN_SQL, lastLoginArgs);
+                }
+                if (!stepperArgs.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE_STEPPER_SQL, stepperArgs);
+                }
+            });
+            logger.debug("Flushed {} last-login and {} stepper updates", lastLoginArgs.size(), stepperArgs.size());
+        } catch (Exception e) {
+            // The entries are still buffered and go out with the next flush
+            logger.error("Failed to flush buffered user updates, will retry: {}", e.getMessage());
+            return;
+        }
+
+        batch.forEach((userId, update) -> {
+            // An entry replaced during the flush holds newer values and stays for the next round
+            pending.remove(userId, update);
+            if (update.hasStepperFields()) {
+                flushListeners.forEach(listener -> listener.accept(userId));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        logger.info("Flushing {} buffered user updates before shutdown", pending.size());
+        flush();
+    }
+
+    private static final class PendingUpdate {
+        private LocalDateTime lastLogin;
+        private String fitnessGoal;
+        private String equipmentAccess;
+        private String injuryHistory;
+
+        private boolean hasStepperFields() {
+            return fitnessGoal != null || equipmentAccess != null || injuryHistory != null;
+        }
+
+        private void applyTo(User user) {
+            if (fitnessGoal != null) user.setFitnessGoal(fitnessGoal);
+            if (equipmentAccess != null) user.setEquipmentAccess(equipmentAccess);
+            if (injuryHistory != null) user.setInjuryHistory(injuryHistory);
+        }
+
+        private PendingUpdate copy() {
+            PendingUpdate copy = new PendingUpdate();
+            copy.lastLogin = lastLogin;
+            copy.fitnessGoal = fitnessGoal;
+            copy.equipmentAccess = equipmentAccess;
+            copy.injuryHistory = injuryHistory;
+            return copy;
+        }
+    }
+}
@@ -105,6 +105,20 @@ CREATE TABLE IF NOT EXISTS chatbot_interaction (
     FOREIGN KEY (related_exercise_id) REFERENCES exercise(exercise_id)
 );
 
+-- Create Refresh Token table (live tokens are held in memory and persisted in batches)
+CREATE TABLE IF NOT EXISTS refresh_token (
+    token_hash VARCHAR(64) PRIMARY KEY,
+    family_id VARCHAR(36) NOT NULL,
+    user_id VARCHAR(36) NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    role VARCHAR(50),
+    name VARCHAR(255),
+    email VARCHAR(255),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(user_id)
+);
+
 -- Create indexes for better performance
 CREATE INDEX IF NOT EXISTS idx_user_username ON users (username);
 CREATE INDEX IF NOT EXISTS idx_user_email ON users (email);
@@ -0,0 +1,41 @@
+package com.appyo.physioapp.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthRateLimiterTest {
+
+    private final MockEnvironment environment = new MockEnvironment()
+            .withProperty("auth.rate-limit.login.ip.capacity", "2")
+            .withProperty("auth.rate-limit.login.ip.refill-per-minute", "1");
+
+    @Test
+    void floodOfNewKeysDoesNotThrottleOtherClients() {
+        AuthRateLimiter limiter = new AuthRateLimiter(environment, new SimpleMeterRegistry(), true, 10);
+
+        // Each address takes a token and stays below its own limit, filling the map many times over
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.tryAcquire("login", AuthRateLimiter.SCOPE_IP, "10.0.0." + i)).isZero();
+        }
+
+        assertThat(limiter.tryAcquire("login", AuthRateLimiter.SCOPE_IP, "192.168.1.1")).isZero();
+        assertThat(limiter.tryAcquire("login", AuthRateLimiter.SCOPE_IP, "192.168.1.2")).isZero();
+    }
+
+    @Test
+    void keepsDrainedBucketsWhenEvicting() {
+        AuthRateLimiter limiter = new AuthRateLimiter(environment, new SimpleMeterRegistry(), true, 10);
+        limiter.tryAcquire("login", AuthRateLimiter.SCOPE_IP, "attacker");
+        limiter.tryAcquire("login", AuthRateLimiter.SCOPE_IP, "attacker");
+        assertThat(limiter.tryAcquire("login", AuthRateLimiter.SCOPE_IP, "attacker")).isPositive();
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("login", AuthRateLimiter.SCOPE_IP, "10.0.0." + i);
+        }
+
+        assertThat(limiter.tryAcquire("login", AuthRateLimiter.SCOPE_IP, "attacker")).isPositive();
+    }
+}
@@ -0,0 +1,110 @@
+package com.appyo.physioapp.backend;
+
+import com.appyo.physioapp.chat.ChatConversationService;
+import com.appyo.physioapp.chat.ChatInteractionWriter;
+import com.appyo.physioapp.llm.ChatStreamListener;
+import com.appyo.physioapp.llm.LlmClient;
+import com.appyo.physioapp.llm.LlmConcurrencyLimiter;
+import com.appyo.physioapp.llm.LlmMetrics;
+import com.appyo.physioapp.llm.LlmRouter;
+import com.appyo.physioapp.llm.PromptBudget;
+import com.appyo.physioapp.llm.SingleFlightRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import retrofit2.Call;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class ChatControllerStreamTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LlmClient llmClient = mock(LlmClient.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment();
+        ChatConversationService conversations = new ChatConversationService(mock(JdbcTemplate.class),
+                mock(ChatInteractionWriter.class), meterRegistry, 100, 60, 50, 3000, 300);
+        ChatController controller = new ChatController(llmClient, mock(LlmRouter.class),
+                new LlmConcurrencyLimiter(environment, meterRegistry), mock(SingleFlightRegistry.class),
+                new LlmMetrics(meterRegistry, environment), new PromptBudget(environment, meterRegistry),
+                conversations, 5000);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void keepsLeadingSpacesOfStreamedTokens() throws Exception {
+        when(llmClient.streamChat(any(), any())).thenAnswer(invocation -> {
+            ChatStreamListener listener = invocation.getArgument(1);
+            listener.onToken("Stretch");
+            listener.onToken(" the");
+            listener.onToken("  calf");
+            listener.onComplete("stop");
+            return mock(Call.class);
+        });
+
+        MvcResult started = mockMvc.perform(post("/api/chat/stream")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("How do I stretch my calf?"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult(5000);
+        String body = started.getResponse().getContentAsString();
+
+        StringBuilder answer = new StringBuilder();
+        for (String data : eventData(body, "token")) {
+            JsonNode token = objectMapper.readTree(data);
+            answer.append(token.get("t").asText());
+        }
+        assertThat(answer.toString()).isEqualTo("Stretch the  calf");
+        assertThat(eventData(body, "done")).containsExactly("stop");
+    }
+
+    // Data of each event with the given name, decoded the way an EventSource client does
+    private static List<String> eventData(String body, String name) {
+        List<String> data = new ArrayList<>();
+        for (String event : body.split("\n\n")) {
+            String eventName = null;
+            String eventData = null;
+            for (String line : event.split("\n")) {
+                if (line.startsWith("event:")) {
+                    eventName = stripField(line.substring(6));
+                } else if (line.startsWith("data:")) {
+                    eventData = stripField(line.substring(5));
+                }
+            }
+            if (name.equals(eventName)) {
+                data.add(eventData);
+            }
+        }
+        return data;
+    }
+
+    // Per the SSE spec a single space after the colon is not part of the value
+    private static String stripField(String value) {
+        return value.startsWith(" ") ? value.substring(1) : value;
+    }
+}
@@ -0,0 +1,122 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.Exercise;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Timed comparison of ExercisePlanParser with the regex parser it replaced. Kept out of the unit
+ * suite since it takes seconds and build machines are too noisy for its numbers to mean anything;
+ * remove @Disabled locally to run it.
+ */
+@Tag("benchmark")
+@Disabled("Benchmark, run by hand")
+class ExercisePlanParserBenchmark {
+
+    private static final String ANSWER = """
+        Here is your plan:
+        ```json
+        [
+          {"name": "Glute Bridge", "description": "Lift the hips", "sets": 3, "reps": 12,
+           "equipment": "None", "difficulty": "beginner", "instructions": "Squeeze at the top"},
+          {"name": "Bird Dog", "description": "Opposite arm and leg", "sets": "2-3", "reps": "10 each side",
+           "equipment": "Mat", "difficulty": "Intermediate", "instructions": "Keep the back flat"}
+        ]
+        ```""";
+
+    private final ExercisePlanParser parser = new ExercisePlanParser();
+
+    // Prints the numbers rather than asserting on them
+    @Test
+    void comparesWithRegexParser() {
+        assertThat(LegacyRegexParser.parse(ANSWER)).hasSize(2);
+        assertThat(parser.parse(ANSWER)).hasSize(2);
+
+        int warmup = 5_000;
+        int iterations = 20_000;
+        for (int i = 0; i < warmup; i++) {
+            LegacyRegexParser.parse(ANSWER);
+            parser.parse(ANSWER);
+        }
+        long regexNanos = time(() -> LegacyRegexParser.parse(ANSWER), iterations);
+        long streamingNanos = time(() -> parser.parse(ANSWER), iterations);
+
+        System.out.printf("ExercisePlanParser: regex %.1f us/answer, streaming %.1f us/answer%n",
+            regexNanos / 1000.0 / iterations, streamingNanos / 1000.0 / iterations);
+    }
+
+    private static long time(Runnable task, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The substring/split/regex parser from ExerciseRecommendationController before ExercisePlanParser,
+     * without its logging, kept here only for the comparison.
+     */
+    private static final class LegacyRegexParser {
+
+        static List<Exercise> parse(String aiResponse) {
+            List<Exercise> exercises = new ArrayList<>();
+            int startIndex = aiResponse.indexOf('[');
+            int endIndex = aiResponse.lastIndexOf(']');
+            if (startIndex == -1 || endIndex == -1) {
+                return exercises;
+            }
+            String jsonArray = aiResponse.substring(startIndex, endIndex + 1);
+            for (String exerciseStr : jsonArray.split("\\},\\s*\\{")) {
+                exerciseStr = exerciseStr.replaceAll("[\\[\\]{}]", "").trim();
+                if (!exerciseStr.isEmpty()) {
+                    exercises.add(parseExercise(exerciseStr));
+                }
+            }
+            return exercises;
+        }
+
+        private static Exercise parseExercise(String exerciseStr) {
+            Exercise exercise = new Exercise();
+            String name = extractValue(exerciseStr, "name");
+            exercise.setName(name != null ? name : "Unknown Exercise");
+            String description = extractValue(exerciseStr, "description");
+            exercise.setDescription(description != null ? description : "");
+            try {
+                String sets = extractValue(exerciseStr, "sets");
+                exercise.setSets(sets != null ? Integer.parseInt(sets) : 3);
+            } catch (NumberFormatException e) {
+                exercise.setSets(3);
+            }
+            try {
+                String reps = extractValue(exerciseStr, "reps");
+                if (reps != null && reps.contains("-")) {
+                    reps = reps.split("-")[0];
+                }
+                exercise.setReps(reps != null ? Integer.parseInt(reps) : 10);
+            } catch (NumberFormatException e) {
+                exercise.setReps(10);
+            }
+            String equipment = extractValue(exerciseStr, "equipment");
+            exercise.setEquipment(equipment != null ? equipment : "None");
+            String difficulty = extractValue(exerciseStr, "difficulty");
+            exercise.setDifficulty(difficulty != null ? difficulty : "Beginner");
+            String instructions = extractValue(exerciseStr, "instructions");
+            exercise.setInstructions(instructions != null ? instructions : "");
+            return exercise;
+        }
+
+        private static String extractValue(String jsonString, String key) {
+            Matcher m = Pattern.compile("\"" + key + "\"\\s*:\\s*\"([^\"]*)\"").matcher(jsonString);
+            return m.find() ? m.group(1) : null;
+        }
+    }
+}
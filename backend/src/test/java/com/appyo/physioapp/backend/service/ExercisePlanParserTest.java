@@ -0,0 +1,100 @@
+package com.appyo.physioapp.backend.service;
+
+import com.appyo.physioapp.backend.model.Exercise;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExercisePlanParserTest {
+
+    private static final String PLAN = """
+        {"exercises": [
+          {"name": "Glute Bridge", "description": "Lift the hips", "sets": 3, "reps": 12,
+           "equipment": "None", "difficulty": "beginner", "instructions": "Squeeze at the top"},
+          {"name": "Bird Dog", "description": "Opposite arm and leg", "sets": "2-3", "reps": "10 each side",
+           "equipment": "Mat", "difficulty": "Intermediate", "instructions": "Keep the back flat"}
+        ]}""";
+
+    private final ExercisePlanParser parser = new ExercisePlanParser();
+
+    @Test
+    void parsesFencedAnswer() {
+        List<Exercise> exercises = parser.parse("```json\n" + PLAN + "\n```");
+
+        assertThat(exercises).extracting(Exercise::getName).containsExactly("Glute Bridge", "Bird Dog");
+        assertThat(exercises.get(0).getDifficulty()).isEqualTo("Beginner");
+        assertThat(exercises.get(1).getSets()).isEqualTo(2);
+        assertThat(exercises.get(1).getReps()).isEqualTo(10);
+    }
+
+    @Test
+    void skipsProseBeforeThePlan() {
+        List<Exercise> exercises = parser.parse(
+            "Sure! Based on your goals [mobility] and {no equipment}, here is a plan:\n" + PLAN + "\nStay safe.");
+
+        assertThat(exercises).extracting(Exercise::getName).containsExactly("Glute Bridge", "Bird Dog");
+    }
+
+    @Test
+    void parsesBareArray() {
+        List<Exercise> exercises = parser.parse("[{\"name\": \"Wall Sit\", \"sets\": \"4\", \"reps\": \"30\"}]");
+
+        assertThat(exercises).hasSize(1);
+        assertThat(exercises.get(0).getSets()).isEqualTo(4);
+        assertThat(exercises.get(0).getReps()).isEqualTo(30);
+    }
+
+    @Test
+    void keepsEscapedQuotes() {
+        List<Exercise> exercises = parser.parse(
+            "{\"exercises\": [{\"name\": \"The \\\"Dead Bug\\\"\", \"instructions\": \"Say \\\"breathe\\\" out loud\"}]}");
+
+        assertThat(exercises).hasSize(1);
+        assertThat(exercises.get(0).getName()).isEqualTo("The \"Dead Bug\"");
+        assertThat(exercises.get(0).getInstructions()).isEqualTo("Say \"breathe\" out loud");
+        // The regex parser this class replaced cut names at the first escaped quote
+        assertThat(parser.parse("[{\"name\": \"The \\\"Dead Bug\\\"\"}]").get(0).getName())
+            .isEqualTo("The \"Dead Bug\"");
+    }
+
+    @Test
+    void handlesNestedObjectsAndBracesInStrings() {
+        List<Exercise> exercises = parser.parse("""
+            {"exercises": [
+              {"name": "Plank", "description": "Hold {steady}, then [rest]", "meta": {"tempo": {"hold": 30}},
+               "cues": ["brace", {"note": "}"}], "sets": 3},
+              {"name": "Side Plank", "sets": 2}
+            ]}""");
+
+        assertThat(exercises).extracting(Exercise::getName).containsExactly("Plank", "Side Plank");
+        assertThat(exercises.get(0).getDescription()).isEqualTo("Hold {steady}, then [rest]");
+        assertThat(exercises.get(0).getSets()).isEqualTo(3);
+    }
+
+    @Test
+    void keepsCompleteExercisesOfTruncatedAnswer() {
+        List<Exercise> exercises = parser.parse(
+            "{\"exercises\": [{\"name\": \"Clamshell\", \"reps\": 15}, {\"name\": \"Squat\", \"sets\": ");
+
+        assertThat(exercises).extracting(Exercise::getName).containsExactly("Clamshell");
+    }
+
+    @Test
+    void dropsInvalidExercisesAndClampsNumbers() {
+        List<Exercise> exercises = parser.parse(
+            "{\"exercises\": [{\"description\": \"no name\"}, {\"name\": \"Lunge\", \"sets\": 50, \"reps\": 0}]}");
+
+        assertThat(exercises).hasSize(1);
+        assertThat(exercises.get(0).getSets()).isEqualTo(10);
+        assertThat(exercises.get(0).getReps()).isEqualTo(1);
+    }
+
+    @Test
+    void returnsEmptyListWithoutPlan() {
+        assertThat(parser.parse(null)).isEmpty();
+        assertThat(parser.parse("I can't help with that.")).isEmpty();
+        assertThat(parser.parse("{\"answer\": \"none\"}")).isEmpty();
+    }
+}
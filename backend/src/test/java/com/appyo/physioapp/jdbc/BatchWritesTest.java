@@ -0,0 +1,57 @@
+package com.appyo.physioapp.jdbc;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchWritesTest {
+
+    @Test
+    void writesRowsOneByOneWhenTheBatchIsRejected() {
+        List<String> written = new ArrayList<>();
+        List<String> rejected = new ArrayList<>();
+
+        List<String> unwritten = BatchWrites.write(List.of("a", "bad", "c"), rows -> {
+            if (rows.contains("bad")) {
+                throw new DataIntegrityViolationException("violates foreign key constraint");
+            }
+            written.addAll(rows);
+        }, (row, e) -> rejected.add(row));
+
+        assertThat(unwritten).isEmpty();
+        assertThat(written).containsExactly("a", "c");
+        assertThat(rejected).containsExactly("bad");
+    }
+
+    @Test
+    void keepsTheWholeBatchWhenTheDatabaseIsUnreachable() {
+        List<String> rejected = new ArrayList<>();
+
+        List<String> unwritten = BatchWrites.write(List.of("a", "b"), rows -> {
+            throw new CannotGetJdbcConnectionException("Connection refused");
+        }, (row, e) -> rejected.add(row));
+
+        assertThat(unwritten).containsExactly("a", "b");
+        assertThat(rejected).isEmpty();
+    }
+
+    @Test
+    void keepsTheRestWhenTheConnectionIsLostDuringRowByRowWrites() {
+        List<String> rejected = new ArrayList<>();
+
+        List<String> unwritten = BatchWrites.write(List.of("bad", "b", "c"), rows -> {
+            if (rows.size() > 1 || rows.contains("bad")) {
+                throw new DataIntegrityViolationException("violates foreign key constraint");
+            }
+            throw new CannotGetJdbcConnectionException("Connection reset");
+        }, (row, e) -> rejected.add(row));
+
+        assertThat(rejected).containsExactly("bad");
+        assertThat(unwritten).containsExactly("b", "c");
+    }
+}
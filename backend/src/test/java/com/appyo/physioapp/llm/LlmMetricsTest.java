@@ -0,0 +1,47 @@
+package com.appyo.physioapp.llm;
+
+import com.appyo.physioapp.backend.model.ChatCompletionRequest;
+import com.appyo.physioapp.backend.model.ChatCompletionResponse;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LlmMetrics metrics = new LlmMetrics(meterRegistry, new MockEnvironment());
+
+    @Test
+    void recordsTimeToFirstByteOncePerTimedCall() {
+        ChatCompletionRequest request = new ChatCompletionRequest("deepseek-chat", List.of(), 0.7, false);
+        CompletableFuture<ChatCompletionResponse> upstream = new CompletableFuture<>();
+
+        metrics.timed("recommendations", request, () -> upstream);
+        // A hedged or failed-over call reaches the provider twice
+        metrics.responseHeaders(request);
+        metrics.responseHeaders(request);
+        upstream.complete(new ChatCompletionResponse());
+        metrics.responseHeaders(request);
+
+        Timer timer = meterRegistry.find("llm.request.time_to_first_byte")
+                .tags("endpoint", "recommendations", "model", "deepseek-chat")
+                .timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresRequestsThatAreNotTimed() {
+        ChatCompletionRequest request = new ChatCompletionRequest("deepseek-chat", List.of(), 0.7, false);
+
+        metrics.responseHeaders(request);
+
+        assertThat(meterRegistry.find("llm.request.time_to_first_byte").timer()).isNull();
+    }
+}
@@ -0,0 +1,21 @@
+-- Refresh tokens issued by /auth/login and rotated by /auth/refresh
+-- The backend keeps live tokens in memory and writes changes here in periodic batches
+
+CREATE TABLE IF NOT EXISTS "public"."refresh_token" (
+    "token_hash" character varying(64) NOT NULL,
+    "family_id" uuid NOT NULL,
+    "user_id" uuid NOT NULL,
+    "username" character varying NOT NULL,
+    "role" character varying,
+    "name" character varying,
+    "email" character varying,
+    "created_at" timestamp without time zone DEFAULT now(),
+    "expires_at" timestamp without time zone NOT NULL,
+    CONSTRAINT "refresh_token_pkey" PRIMARY KEY ("token_hash")
+);
+
+ALTER TABLE "public"."refresh_token"
+ADD CONSTRAINT "refresh_token_user_id_fkey"
+FOREIGN KEY ("user_id") REFERENCES "public"."User"("user_id") ON DELETE CASCADE;
+
+CREATE INDEX IF NOT EXISTS "idx_refresh_token_expires_at" ON "public"."refresh_token"("expires_at");
@@ -0,0 +1,34 @@
+-- Batch plan generation for clinic onboarding (POST /api/plans/batch)
+-- Each item row is the checkpoint for one user: the backend marks it done in the same transaction
+-- that writes the plan to generated_plans, and resumes pending items after a restart
+
+CREATE TABLE IF NOT EXISTS "public"."plan_batch_job" (
+    "job_id" uuid NOT NULL,
+    "status" character varying NOT NULL DEFAULT 'queued',
+    "plan_request" text NOT NULL,
+    "total" integer NOT NULL,
+    "created_at" timestamp without time zone DEFAULT now(),
+    "updated_at" timestamp without time zone DEFAULT now(),
+    "finished_at" timestamp without time zone,
+    CONSTRAINT "plan_batch_job_pkey" PRIMARY KEY ("job_id")
+);
+
+CREATE TABLE IF NOT EXISTS "public"."plan_batch_item" (
+    "job_id" uuid NOT NULL,
+    "user_id" uuid NOT NULL,
+    "status" character varying NOT NULL DEFAULT 'pending',
+    "attempts" integer NOT NULL DEFAULT 0,
+    "error" text,
+    "updated_at" timestamp without time zone DEFAULT now(),
+    CONSTRAINT "plan_batch_item_pkey" PRIMARY KEY ("job_id", "user_id")
+);
+
+ALTER TABLE "public"."plan_batch_item"
+ADD CONSTRAINT "plan_batch_item_job_id_fkey"
+FOREIGN KEY ("job_id") REFERENCES "public"."plan_batch_job"("job_id") ON DELETE CASCADE;
+
+CREATE INDEX IF NOT EXISTS "idx_plan_batch_job_status" ON "public"."plan_batch_job"("status", "created_at");
+CREATE INDEX IF NOT EXISTS "idx_plan_batch_item_status" ON "public"."plan_batch_item"("job_id", "status");
+
+ALTER TABLE "public"."plan_batch_job" OWNER TO "postgres";
+ALTER TABLE "public"."plan_batch_item" OWNER TO "postgres";
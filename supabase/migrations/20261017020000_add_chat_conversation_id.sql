@@ -0,0 +1,7 @@
+-- Multi-turn chat: group chatbot_interaction rows into conversations
+-- The backend writes turns in periodic batches and reloads a conversation's latest turns by this key
+
+ALTER TABLE "public"."chatbot_interaction" ADD COLUMN IF NOT EXISTS "conversation_id" uuid;
+
+CREATE INDEX IF NOT EXISTS "idx_chatbot_interaction_conversation"
+    ON "public"."chatbot_interaction"("conversation_id", "timestamp");